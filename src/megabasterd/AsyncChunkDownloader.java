@@ -0,0 +1,772 @@
+package megabasterd;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import static java.util.logging.Logger.getLogger;
+import static megabasterd.MiscTools.bin2i32a;
+import static megabasterd.MiscTools.getWaitTimeExpBackOff;
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+
+/**
+ *
+ * @author tonikelope
+ */
+public class AsyncChunkDownloader extends ChunkDownloader {
+
+    public static final int DISPATCH_RETRY_WAIT = 100;
+
+    private final ReentrantLock _pause_lock;
+    private boolean _pause_wait;
+    private boolean _notified;
+    private volatile boolean _blocking;
+    private volatile boolean _stalled;
+    private volatile boolean _aborted;
+    private volatile RangeExchange _exchange;
+    private CompletableFuture<Void> _lifetime;
+    private ChunkCrypter _crypter;
+    private ChunkMACEngine _mac_engine;
+    private ChunkRangePlanner _range_planner;
+    private String _worker_url;
+    private boolean _url_error;
+    private boolean _error;
+    private int _conta_error;
+    private ArrayList<Long> _chunk_ids;
+    private int _chunk_index;
+    private Chunk _chunk;
+    private TransferWatchdog.Watch _watch;
+    private int _http_status;
+    private long _range_bytes;
+    private long _request_time;
+    private long _response_time;
+    private boolean _paused;
+    private boolean _idle;
+    private final Runnable _wakeup;
+
+    public AsyncChunkDownloader(int id, Download download) {
+        super(id, download);
+        _pause_lock = new ReentrantLock();
+        _pause_wait = false;
+        _idle = false;
+        _wakeup = new Runnable() {
+            @Override
+            public void run() {
+                wakeup();
+            }
+        };
+        _notified = false;
+        _aborted = false;
+        _blocking = false;
+        _stalled = false;
+        _exchange = null;
+        _worker_url = null;
+        _url_error = false;
+        _error = false;
+        _conta_error = 0;
+    }
+
+    @Override
+    public boolean isStalled() {
+        return _blocking ? super.isStalled() : _stalled;
+    }
+
+    @Override
+    public void secureNotify() {
+
+        if (_blocking) {
+
+            super.secureNotify();
+
+            return;
+        }
+
+        boolean resume;
+
+        _pause_lock.lock();
+
+        try {
+
+            resume = _pause_wait;
+
+            _pause_wait = false;
+
+            _notified = !resume;
+
+        } finally {
+
+            _pause_lock.unlock();
+        }
+
+        RangeExchange exchange = _exchange;
+
+        if (exchange != null) {
+
+            if (isExit() || getDownload().isStopped()) {
+
+                exchange.getHttpget().abort();
+            }
+
+            if (resume) {
+
+                exchange.resume();
+            }
+
+        } else {
+
+            wakeup();
+        }
+    }
+
+    private void wakeup() {
+
+        boolean idle;
+
+        _pause_lock.lock();
+
+        try {
+
+            idle = _idle;
+
+            _idle = false;
+
+        } finally {
+
+            _pause_lock.unlock();
+        }
+
+        if (idle) {
+
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    next();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void run() {
+
+        System.out.println("Worker [" + getId() + "]: let's do some work (async)!");
+
+        _lifetime = getDownload().getThread_pool().newAsyncTask();
+
+        _lifetime.whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable ex) {
+
+                RangeExchange exchange = _exchange;
+
+                if (ex != null && exchange != null) {
+
+                    exchange.getHttpget().abort();
+                }
+            }
+        });
+
+        try {
+
+            _crypter = new ChunkCrypter(Cipher.DECRYPT_MODE, getDownload().getChunkwriter().getByte_file_key(), getDownload().getChunkwriter().getByte_iv());
+
+            _mac_engine = new ChunkMACEngine(getDownload().getChunkwriter().getByte_file_key(), bin2i32a(getDownload().getChunkwriter().getByte_iv()));
+
+            _range_planner = new ChunkRangePlanner();
+
+            next();
+
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException ex) {
+
+            getDownload().emergencyStopDownloader(ex.getMessage());
+
+            getLogger(AsyncChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
+
+            finish();
+        }
+    }
+
+    private void next() {
+
+        Download download = getDownload();
+
+        if (isExit() || download.isStopped()) {
+
+            finish();
+
+            return;
+        }
+
+        try {
+
+            if (_worker_url == null || _error) {
+
+                _worker_url = _url_error ? download.renewDownloadUrlForWorker(_worker_url) : download.getDownloadUrlForWorker();
+
+                _url_error = false;
+
+                if (!AsyncHttpEngine.isSupported(new URI(_worker_url))) {
+
+                    System.out.println("Worker [" + getId() + "]: " + _worker_url + " is not plain http, falling back to a blocking worker");
+
+                    _blocking = true;
+
+                    super.run();
+
+                    _lifetime.complete(null);
+
+                    return;
+                }
+            }
+
+            long generation = download.getEndgame().getGeneration();
+
+            _chunk_ids = download.nextChunkIdRun(_range_planner.getRange_size());
+
+            if (_chunk_ids.isEmpty()) {
+
+                _chunk_ids = null;
+
+                _pause_lock.lock();
+
+                try {
+
+                    _idle = true;
+
+                } finally {
+
+                    _pause_lock.unlock();
+                }
+
+                //No thread is held while idle: the endgame scheduler (or a stop) calls back when there may be work
+                if (!download.getEndgame().waitForWork(generation, _wakeup) || isExit() || download.isStopped()) {
+
+                    wakeup();
+                }
+
+                return;
+            }
+
+            _chunk_index = 0;
+
+            _chunk = new Chunk(_chunk_ids.get(0), download.getFile_size(), null);
+
+            long last_chunk_id = _chunk_ids.get(_chunk_ids.size() - 1);
+
+            HttpGet httpget = new HttpGet(new URI(_worker_url + "/" + _chunk.getOffset() + "-" + (Chunk.calculateChunkOffset(last_chunk_id) + Chunk.calculateChunkSize(last_chunk_id, download.getFile_size()) - 1)));
+
+            RangeExchange exchange = new RangeExchange(httpget);
+
+            /* The endgame scheduler and the watchdog abort requests through HttpGet: let that abort reach the engine. */
+            httpget.setCancellable(exchange);
+
+            _exchange = exchange;
+
+            download.getEndgame().register(_chunk_ids, httpget);
+
+            download.getEndgame().startFetch(_chunk.getId(), httpget);
+
+            _watch = TransferWatchdog.getInstance().watch(download, httpget);
+
+            _error = false;
+
+            _paused = false;
+
+            _http_status = 0;
+
+            _range_bytes = 0;
+
+            _request_time = System.nanoTime();
+
+            try {
+
+                AsyncHttpEngine.getInstance().execute(exchange);
+
+            } catch (IOException ex) {
+
+                exchange.onError(ex);
+            }
+
+        } catch (ChunkInvalidIdException e) {
+
+            finish();
+
+        } catch (IOException ex) {
+
+            download.emergencyStopDownloader(ex.getMessage());
+
+            getLogger(AsyncChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
+
+            finish();
+
+        } catch (URISyntaxException ex) {
+
+            getLogger(AsyncChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
+
+            finish();
+        }
+    }
+
+    private void chunkDone() {
+
+        Download download = getDownload();
+
+        try {
+
+            System.out.println("Worker [" + getId() + "] has downloaded chunk [" + _chunk.getId() + "]!");
+
+            _crypter.crypt(_chunk);
+
+            _chunk.setMac(_mac_engine.chunkMAC(_chunk.getData()));
+
+            _range_bytes += _chunk.getSize();
+
+            if (!download.isChunkDone(_chunk.getId()) && download.getChunkwriter().getChunk_queue().putIfAbsent(_chunk.getId(), _chunk) == null) {
+
+                download.getEndgame().chunkDone(_chunk.getId(), _exchange.getHttpget());
+
+                download.getChunkwriter().secureNotify();
+
+            } else {
+
+                System.out.println("Worker [" + getId() + "] chunk [" + _chunk.getId() + "] was already downloaded by another worker");
+
+                download.getPartialProgress().add(-1 * _chunk.getOutputStream().size());
+
+                _chunk.release();
+            }
+
+            _conta_error = 0;
+
+            _chunk = null;
+
+            if (++_chunk_index < _chunk_ids.size()) {
+
+                _chunk = new Chunk(_chunk_ids.get(_chunk_index), download.getFile_size(), null);
+
+                download.getEndgame().startFetch(_chunk.getId(), _exchange.getHttpget());
+            }
+
+            if (!download.isPaused() || download.isStopped() || !pauseWait()) {
+
+                _exchange.resume();
+            }
+
+        } catch (ChunkInvalidIdException e) {
+
+            _exchange.getHttpget().abort();
+
+            _exchange.resume();
+
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException | ShortBufferException ex) {
+
+            download.emergencyStopDownloader(ex.getMessage());
+
+            getLogger(AsyncChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
+
+            _exchange.getHttpget().abort();
+
+            _exchange.resume();
+        }
+    }
+
+    private void done(IOException io_error) {
+
+        Download download = getDownload();
+
+        HttpGet httpget = _exchange.getHttpget();
+
+        boolean error = io_error != null;
+
+        if (io_error != null) {
+
+            if (_chunk != null && _chunk.getOutputStream().size() > 0) {
+                download.getPartialProgress().add(-1 * _chunk.getOutputStream().size());
+            }
+
+            if (httpget.isAborted() && !_watch.isStalled()) {
+
+                System.out.println("Worker [" + getId() + "] duplicate request aborted (chunk already downloaded by another worker)");
+
+            } else {
+
+                _range_planner.error();
+
+                download.getSlot_errors().incrementAndGet();
+
+                getLogger(AsyncChunkDownloader.class.getName()).log(Level.SEVERE, null, io_error);
+            }
+
+        } else if (_http_status != HttpStatus.SC_OK) {
+
+            error = true;
+
+            _url_error = DownloadUrlLeaseManager.isUrlError(_http_status);
+
+        } else if (_chunk != null) {
+
+            if (_chunk.getOutputStream().size() > 0) {
+                download.getPartialProgress().add(-1 * _chunk.getOutputStream().size());
+            }
+
+            error = true;
+
+        } else if (!_paused) {
+
+            _range_planner.sample(_range_bytes, _response_time - _request_time, System.nanoTime() - _response_time);
+        }
+
+        boolean backoff = false;
+
+        if (io_error == null && error && !download.isStopped() && (!httpget.isAborted() || _watch.isStalled())) {
+
+            _range_planner.error();
+
+            download.getSlot_errors().incrementAndGet();
+
+            if (_http_status == 509) {
+                download.getBandwidth_errors().incrementAndGet();
+            }
+
+            _conta_error++;
+
+            backoff = !isExit();
+        }
+
+        if (_chunk != null) {
+            _chunk.release();
+        }
+
+        rejectChunkIds(_chunk_ids, _chunk_index);
+
+        download.getEndgame().unregister(_chunk_ids, httpget);
+
+        _chunk_ids = null;
+
+        _watch.close();
+
+        _chunk = null;
+
+        _exchange = null;
+
+        _error = error;
+
+        if (_stalled != _watch.isStalled()) {
+
+            _stalled = _watch.isStalled();
+
+            download.getView().updateSlotsStatus();
+        }
+
+        if (backoff) {
+
+            setError_wait(true);
+
+            download.getView().updateSlotsStatus();
+
+            dispatchLater(new Runnable() {
+                @Override
+                public void run() {
+
+                    setError_wait(false);
+
+                    getDownload().getView().updateSlotsStatus();
+
+                    next();
+                }
+            }, getWaitTimeExpBackOff(_conta_error) * 1000);
+
+        } else {
+
+            next();
+        }
+    }
+
+    private boolean pauseWait() {
+
+        getDownload().pause_worker();
+
+        _pause_lock.lock();
+
+        try {
+
+            _paused = true;
+
+            if (_notified) {
+
+                _notified = false;
+
+                return false;
+            }
+
+            _pause_wait = true;
+
+            return true;
+
+        } finally {
+
+            _pause_lock.unlock();
+        }
+    }
+
+    private void finish() {
+
+        _exchange = null;
+
+        getDownload().stopThisSlot(this);
+
+        getDownload().getChunkwriter().secureNotify();
+
+        System.out.println("Worker [" + getId() + "]: bye bye");
+
+        if (_lifetime != null) {
+
+            _lifetime.complete(null);
+        }
+    }
+
+    private void dispatch(Runnable task) {
+
+        if (_aborted) {
+            return;
+        }
+
+        try {
+
+            getDownload().getThread_pool().execute(task);
+
+        } catch (RejectedExecutionException ex) {
+
+            if (getDownload().getThread_pool().isShutdown()) {
+
+                abort();
+
+            } else {
+
+                /* The I/O pool is at its cap: try again later, the scheduler threads must never run (and block on) slot work. */
+                dispatchLater(task, DISPATCH_RETRY_WAIT);
+            }
+        }
+    }
+
+    private void abort() {
+
+        /* The download is shutting down its workers: give everything back without running any more slot work. */
+        _aborted = true;
+
+        RangeExchange exchange = _exchange;
+
+        if (exchange != null) {
+
+            exchange.getHttpget().abort();
+
+            exchange.resume();
+
+            getDownload().getEndgame().unregister(_chunk_ids, exchange.getHttpget());
+        }
+
+        if (_chunk != null) {
+
+            if (_chunk.getOutputStream().size() > 0) {
+                getDownload().getPartialProgress().add(-1 * _chunk.getOutputStream().size());
+            }
+
+            _chunk.release();
+
+            _chunk = null;
+        }
+
+        if (_chunk_ids != null) {
+
+            rejectChunkIds(_chunk_ids, _chunk_index);
+        }
+
+        if (_watch != null) {
+
+            _watch.close();
+        }
+
+        finish();
+    }
+
+    private void dispatchLater(final Runnable task, long delay) {
+
+        TransferRuntime.getInstance().getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                dispatch(task);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private final class RangeExchange extends AsyncHttpEngine.Exchange {
+
+        private final HttpGet _httpget;
+        private final Runnable _resume;
+        private final BandwidthNode.Ticket _ticket;
+
+        private RangeExchange(HttpGet httpget) {
+
+            super(httpget.getURI());
+
+            _httpget = httpget;
+
+            _ticket = new BandwidthNode.Ticket();
+
+            _resume = new Runnable() {
+                @Override
+                public void run() {
+                    resume();
+                }
+            };
+        }
+
+        public HttpGet getHttpget() {
+            return _httpget;
+        }
+
+        @Override
+        protected boolean onResponse(int status, long content_length) {
+
+            _response_time = System.nanoTime();
+
+            _http_status = status;
+
+            if (status != HttpStatus.SC_OK) {
+
+                System.out.println("Failed : HTTP error code : " + status);
+
+                return false;
+            }
+
+            return !isExit() && !getDownload().isStopped();
+        }
+
+        @Override
+        protected boolean onBody(ByteBuffer data) throws IOException {
+
+            Download download = getDownload();
+
+            BandwidthNode node = download.getBandwidth_node();
+
+            boolean limited = node.isLimited();
+
+            while (data.hasRemaining()) {
+
+                if (_chunk == null) {
+
+                    throw new IOException("Worker [" + getId() + "] got more data than requested");
+                }
+
+                int len = (int) Math.min(data.remaining(), _chunk.getSize() - _chunk.getOutputStream().size());
+
+                if (limited) {
+
+                    len = Math.min(len, node.getSlice_size(download.getMain_panel().getStream_supervisor().getSlice_size()));
+
+                    /* Never park the selector: wait for this download's turn in the fair queue without reading this connection. */
+                    long delay = node.tryConsume(_ticket, len, _resume);
+
+                    if (delay != 0) {
+
+                        if (delay > 0) {
+
+                            TransferRuntime.getInstance().getScheduler().schedule(_resume, delay, TimeUnit.NANOSECONDS);
+                        }
+
+                        return false;
+                    }
+                }
+
+                _chunk.getOutputStream().write(data, len);
+
+                _watch.addBytes(len);
+
+                download.getPartialProgress().add(len);
+
+                if (_chunk.getOutputStream().size() == _chunk.getSize()) {
+
+                    /* Crypt, MAC and the next chunk buffer (which may wait for memory budget) are no job for the selector thread. */
+                    dispatch(new Runnable() {
+                        @Override
+                        public void run() {
+                            chunkDone();
+                        }
+                    });
+
+                    return false;
+                }
+
+                if (download.isPaused() && !download.isStopped()) {
+
+                    dispatch(new Runnable() {
+                        @Override
+                        public void run() {
+
+                            if (!pauseWait()) {
+                                resume();
+                            }
+                        }
+                    });
+
+                    return false;
+                }
+
+                if (limited) {
+
+                    /* The bytes are paid: stop reading this connection until the buckets have refilled. */
+                    long delay = node.getDelay(0);
+
+                    if (delay > 0) {
+
+                        TransferRuntime.getInstance().getScheduler().schedule(_resume, delay, TimeUnit.NANOSECONDS);
+
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        protected void onComplete() {
+
+            getDownload().getBandwidth_node().cancelTurn(_ticket);
+
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    done(null);
+                }
+            });
+        }
+
+        @Override
+        protected void onError(final IOException ex) {
+
+            getDownload().getBandwidth_node().cancelTurn(_ticket);
+
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    done(ex);
+                }
+            });
+        }
+    }
+}
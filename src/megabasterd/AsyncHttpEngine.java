@@ -0,0 +1,1022 @@
+package megabasterd;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import static java.util.logging.Logger.getLogger;
+import static megabasterd.DBTools.selectIntSettingValueFromDB;
+import static megabasterd.MainPanel.THREAD_POOL;
+import org.apache.http.concurrent.Cancellable;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class AsyncHttpEngine implements Runnable {
+
+    public static final int SELECT_TIMEOUT = 1000;
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final int MAX_HEADER_SIZE = 16 * 1024;
+    public static final int MAX_IDLE_CONNECTIONS = 32;
+    public static final int IDLE_TIMEOUT = 15;
+    public static final int MAX_REDIRECTS = 5;
+
+    private static final int CONNECTING = 0;
+    private static final int WRITING = 1;
+    private static final int HEAD = 2;
+    private static final int BODY = 3;
+    private static final int DONE = 4;
+
+    private final Selector _selector;
+    private final ConcurrentLinkedQueue<Exchange> _pending;
+    private final HashMap<String, ArrayDeque<IdleConnection>> _idle;
+    private final int _connect_timeout;
+    private final int _socket_timeout;
+
+    public static AsyncHttpEngine getInstance() {
+
+        return LazyHolder.INSTANCE;
+    }
+
+    public static boolean isSupported(URI uri) {
+
+        return "http".equalsIgnoreCase(uri.getScheme()) && uri.getHost() != null;
+    }
+
+    private AsyncHttpEngine() {
+
+        Selector selector = null;
+
+        try {
+
+            selector = Selector.open();
+
+        } catch (IOException ex) {
+
+            getLogger(AsyncHttpEngine.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        _selector = selector;
+
+        _pending = new ConcurrentLinkedQueue<>();
+
+        _idle = new HashMap<>();
+
+        //Same timeouts as the blocking client
+        _connect_timeout = selectIntSettingValueFromDB("http_connect_timeout", HttpConnectionPool.CONNECT_TIMEOUT_DEFAULT);
+
+        _socket_timeout = selectIntSettingValueFromDB("http_socket_timeout", HttpConnectionPool.SOCKET_TIMEOUT_DEFAULT);
+
+        if (_selector != null) {
+
+            THREAD_POOL.execute(this);
+        }
+    }
+
+    public boolean isAvailable() {
+        return _selector != null;
+    }
+
+    public void execute(Exchange exchange) throws IOException {
+
+        if (_selector == null) {
+
+            throw new IOException("Async HTTP engine is not available");
+        }
+
+        URI uri = exchange.getUri();
+
+        int port = uri.getPort() != -1 ? uri.getPort() : 80;
+
+        /* Name resolution blocks, so it is done here by the caller and never by the selector thread. */
+        InetSocketAddress address = new InetSocketAddress(uri.getHost(), port);
+
+        if (address.isUnresolved()) {
+
+            throw new UnknownHostException(uri.getHost());
+        }
+
+        exchange._address = address;
+
+        exchange._route = uri.getHost().toLowerCase() + ":" + port;
+
+        wakeup(exchange);
+    }
+
+    private void wakeup(Exchange exchange) {
+
+        _pending.add(exchange);
+
+        _selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+
+        Exchange exchange;
+
+        while (true) {
+
+            try {
+
+                _selector.select(SELECT_TIMEOUT);
+
+            } catch (IOException ex) {
+
+                getLogger(AsyncHttpEngine.class.getName()).log(Level.SEVERE, null, ex);
+
+                return;
+            }
+
+            while ((exchange = _pending.poll()) != null) {
+
+                process(exchange);
+            }
+
+            Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+
+            while (keys.hasNext()) {
+
+                SelectionKey key = keys.next();
+
+                keys.remove();
+
+                if (key.isValid()) {
+
+                    if (key.attachment() instanceof Exchange) {
+
+                        ready((Exchange) key.attachment());
+
+                    } else {
+
+                        closeIdle((IdleConnection) key.attachment());
+                    }
+                }
+            }
+
+            expireIdle(System.currentTimeMillis());
+
+            expireExchanges(System.currentTimeMillis());
+        }
+    }
+
+    private void process(Exchange exchange) {
+
+        if (exchange._state == DONE) {
+            return;
+        }
+
+        try {
+
+            if (exchange._cancelled && exchange._failure == null) {
+
+                exchange._failure = new IOException("Request aborted");
+
+                close(exchange);
+            }
+
+            if (exchange._channel == null && exchange._failure == null && exchange._address != null) {
+
+                exchange._buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+                connect(exchange, pollIdle(exchange._route));
+            }
+
+            if (exchange._resume) {
+
+                exchange._resume = false;
+
+                exchange._suspended = false;
+
+                //Time spent suspended by the caller is not the server's fault
+                exchange._deadline = System.currentTimeMillis() + _socket_timeout * 1000L;
+            }
+
+            if (!exchange._suspended) {
+
+                if (exchange._failure != null) {
+
+                    fail(exchange, exchange._failure);
+
+                } else if (exchange._state == BODY) {
+
+                    deliver(exchange);
+                }
+            }
+
+        } catch (IOException ex) {
+
+            fail(exchange, ex);
+
+        } catch (RuntimeException ex) {
+
+            getLogger(AsyncHttpEngine.class.getName()).log(Level.SEVERE, null, ex);
+
+            fail(exchange, new IOException(ex));
+        }
+    }
+
+    private void ready(Exchange exchange) {
+
+        SelectionKey key = exchange._key;
+
+        try {
+
+            if (exchange._state == CONNECTING && key.isConnectable()) {
+
+                if (exchange._channel.finishConnect()) {
+
+                    exchange._state = WRITING;
+
+                    exchange._deadline = System.currentTimeMillis() + _socket_timeout * 1000L;
+
+                    key.interestOps(SelectionKey.OP_WRITE);
+                }
+
+            } else if (exchange._state == WRITING && key.isWritable()) {
+
+                exchange._channel.write(exchange._request);
+
+                if (!exchange._request.hasRemaining()) {
+
+                    exchange._state = HEAD;
+
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+
+            } else if (exchange._state == HEAD && key.isReadable()) {
+
+                readHead(exchange);
+
+            } else if (exchange._state == BODY && key.isReadable()) {
+
+                exchange._buffer.compact();
+
+                if (exchange._channel.read(exchange._buffer) == -1) {
+
+                    exchange._eof = true;
+                }
+
+                exchange._deadline = System.currentTimeMillis() + _socket_timeout * 1000L;
+
+                exchange._buffer.flip();
+
+                deliver(exchange);
+            }
+
+        } catch (IOException ex) {
+
+            if (exchange._reused && exchange._state != BODY && exchange._state != DONE && exchange._buffer.position() == 0) {
+
+                /* The server dropped a kept-alive connection before we used it: that's not the request's fault. */
+                close(exchange);
+
+                try {
+
+                    exchange._request.rewind();
+
+                    connect(exchange, null);
+
+                } catch (IOException ex2) {
+
+                    fail(exchange, ex2);
+                }
+
+            } else {
+
+                fail(exchange, ex);
+            }
+
+        } catch (RuntimeException ex) {
+
+            getLogger(AsyncHttpEngine.class.getName()).log(Level.SEVERE, null, ex);
+
+            fail(exchange, new IOException(ex));
+        }
+    }
+
+    private void connect(Exchange exchange, IdleConnection idle) throws IOException {
+
+        if (idle != null) {
+
+            exchange._channel = idle._channel;
+
+            exchange._key = idle._key;
+
+            exchange._reused = true;
+
+            exchange._state = WRITING;
+
+            exchange._deadline = System.currentTimeMillis() + _socket_timeout * 1000L;
+
+            exchange._key.attach(exchange);
+
+            exchange._key.interestOps(SelectionKey.OP_WRITE);
+
+        } else {
+
+            SocketChannel channel = SocketChannel.open();
+
+            exchange._channel = channel;
+
+            exchange._deadline = System.currentTimeMillis() + _connect_timeout * 1000L;
+
+            exchange._reused = false;
+
+            channel.configureBlocking(false);
+
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            if (channel.connect(exchange._address)) {
+
+                exchange._state = WRITING;
+
+                exchange._key = channel.register(_selector, SelectionKey.OP_WRITE, exchange);
+
+            } else {
+
+                exchange._state = CONNECTING;
+
+                exchange._key = channel.register(_selector, SelectionKey.OP_CONNECT, exchange);
+            }
+        }
+    }
+
+    private void readHead(Exchange exchange) throws IOException {
+
+        ByteBuffer buffer = exchange._buffer;
+
+        if (exchange._channel.read(buffer) == -1) {
+
+            throw new IOException("Connection closed before the response headers");
+        }
+
+        exchange._deadline = System.currentTimeMillis() + _socket_timeout * 1000L;
+
+        int end = -1;
+
+        //Servers should end the head with CRLFCRLF but bare LFs are accepted too
+        for (int i = 1; i < buffer.position() && end == -1; i++) {
+
+            if (buffer.get(i) == '\n' && (buffer.get(i - 1) == '\n' || (i >= 2 && buffer.get(i - 1) == '\r' && buffer.get(i - 2) == '\n'))) {
+
+                end = i + 1;
+            }
+        }
+
+        if (end == -1) {
+
+            if (buffer.position() >= MAX_HEADER_SIZE) {
+
+                throw new IOException("Response headers too large");
+            }
+
+            return;
+        }
+
+        byte[] head = new byte[end];
+
+        buffer.flip();
+
+        buffer.get(head);
+
+        ArrayList<String> lines = new ArrayList<>();
+
+        for (String line : new String(head, StandardCharsets.ISO_8859_1).split("\r?\n")) {
+
+            if (!line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t') && lines.size() > 1) {
+
+                //Obsolete line folding: the value goes on with the previous header
+                lines.set(lines.size() - 1, lines.get(lines.size() - 1) + " " + line.trim());
+
+            } else if (!line.isEmpty()) {
+
+                lines.add(line);
+            }
+        }
+
+        String[] status_line = lines.isEmpty() ? new String[0] : lines.get(0).split(" ", 3);
+
+        if (status_line.length < 2 || !status_line[0].startsWith("HTTP/")) {
+
+            throw new IOException("Bad response status line: " + (lines.isEmpty() ? "" : lines.get(0)));
+        }
+
+        String location = null;
+
+        try {
+
+            exchange._status = Integer.parseInt(status_line[1]);
+
+            exchange._content_length = -1L;
+
+            exchange._chunked = false;
+
+            exchange._keep_alive = status_line[0].equals("HTTP/1.1");
+
+            for (int i = 1; i < lines.size(); i++) {
+
+                int colon = lines.get(i).indexOf(':');
+
+                if (colon > 0) {
+
+                    String name = lines.get(i).substring(0, colon).trim().toLowerCase(), value = lines.get(i).substring(colon + 1).trim();
+
+                    if (name.equals("content-length")) {
+
+                        exchange._content_length = Long.parseLong(value);
+
+                    } else if (name.equals("connection")) {
+
+                        exchange._keep_alive = value.equalsIgnoreCase("keep-alive");
+
+                    } else if (name.equals("location")) {
+
+                        location = value;
+
+                    } else if (name.equals("transfer-encoding")) {
+
+                        if (value.equalsIgnoreCase("chunked")) {
+
+                            exchange._chunked = true;
+
+                        } else if (!value.equalsIgnoreCase("identity")) {
+
+                            throw new IOException("Unsupported transfer encoding: " + value);
+                        }
+                    }
+                }
+            }
+
+        } catch (NumberFormatException ex) {
+
+            throw new IOException(ex);
+        }
+
+        if (exchange._chunked) {
+
+            //The chunk sizes tell where the body ends
+            exchange._content_length = -1L;
+
+        } else if (exchange._content_length < 0) {
+
+            exchange._keep_alive = false;
+        }
+
+        if (location != null && isRedirect(exchange._status)) {
+
+            redirect(exchange, location);
+
+            return;
+        }
+
+        exchange._state = BODY;
+
+        exchange._received = 0L;
+
+        exchange._chunk_remaining = 0L;
+
+        exchange._trailers = false;
+
+        exchange._body_done = false;
+
+        if (exchange.onResponse(exchange._status, exchange._content_length)) {
+
+            deliver(exchange);
+
+        } else {
+
+            exchange._keep_alive = false;
+
+            complete(exchange);
+        }
+    }
+
+    private static boolean isRedirect(int status) {
+
+        return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+    }
+
+    private void redirect(final Exchange exchange, String location) throws IOException {
+
+        if (++exchange._redirects > MAX_REDIRECTS) {
+
+            throw new IOException("Too many redirects");
+        }
+
+        URI uri;
+
+        try {
+
+            uri = exchange._uri.resolve(new URI(location));
+
+        } catch (URISyntaxException | IllegalArgumentException ex) {
+
+            throw new IOException("Bad redirect location: " + location, ex);
+        }
+
+        if (!isSupported(uri)) {
+
+            throw new IOException("Unsupported redirect location: " + location);
+        }
+
+        //The body of a redirect is not worth reading: start again with a fresh connection
+        close(exchange);
+
+        exchange.reset(uri);
+
+        /* Name resolution blocks, so it is done by a pool thread and never by the selector thread. */
+        THREAD_POOL.execute(new Runnable() {
+            @Override
+            public void run() {
+
+                try {
+
+                    execute(exchange);
+
+                } catch (IOException ex) {
+
+                    exchange._failure = ex;
+
+                    wakeup(exchange);
+                }
+            }
+        });
+    }
+
+    private static String readLine(ByteBuffer buffer) throws IOException {
+
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+
+            if (buffer.get(i) == '\n') {
+
+                byte[] line = new byte[i - buffer.position()];
+
+                buffer.get(line);
+
+                buffer.get();
+
+                return new String(line, StandardCharsets.ISO_8859_1).trim();
+            }
+        }
+
+        if (buffer.remaining() >= MAX_HEADER_SIZE) {
+
+            throw new IOException("Chunk header too large");
+        }
+
+        return null;
+    }
+
+    private static boolean readChunkHeader(Exchange exchange) throws IOException {
+
+        String line = readLine(exchange._buffer);
+
+        if (line == null) {
+
+            return false;
+        }
+
+        if (exchange._trailers) {
+
+            //Trailers are ignored, an empty line ends them (and the body)
+            exchange._body_done = line.isEmpty();
+
+        } else if (!line.isEmpty()) {
+
+            int semicolon = line.indexOf(';');
+
+            try {
+
+                long size = Long.parseLong((semicolon != -1 ? line.substring(0, semicolon) : line).trim(), 16);
+
+                if (size < 0) {
+
+                    throw new IOException("Bad chunk size: " + line);
+                }
+
+                exchange._chunk_remaining = size;
+
+                exchange._trailers = size == 0;
+
+            } catch (NumberFormatException ex) {
+
+                throw new IOException("Bad chunk size: " + line, ex);
+            }
+        }
+
+        return true;
+    }
+
+    private void deliver(Exchange exchange) throws IOException {
+
+        ByteBuffer buffer = exchange._buffer;
+
+        int limit = buffer.limit();
+
+        while (buffer.hasRemaining() && !exchange._suspended && !isBodyDone(exchange)) {
+
+            long available;
+
+            if (exchange._chunked) {
+
+                if (exchange._chunk_remaining == 0) {
+
+                    /* Between chunks: the CRLF closing the previous one, the next size line or the trailers. */
+                    if (!readChunkHeader(exchange)) {
+
+                        break;
+                    }
+
+                    continue;
+                }
+
+                available = exchange._chunk_remaining;
+
+            } else {
+
+                available = exchange._content_length >= 0 ? exchange._content_length - exchange._received : Long.MAX_VALUE;
+            }
+
+            if (buffer.remaining() > available) {
+
+                buffer.limit(buffer.position() + (int) available);
+            }
+
+            int remaining = buffer.remaining(), consumed;
+
+            try {
+
+                if (!exchange.onBody(buffer)) {
+
+                    exchange._suspended = true;
+                }
+
+            } finally {
+
+                consumed = remaining - buffer.remaining();
+
+                buffer.limit(limit);
+            }
+
+            exchange._received += consumed;
+
+            if (exchange._chunked) {
+
+                exchange._chunk_remaining -= consumed;
+            }
+        }
+
+        if (exchange._suspended) {
+
+            exchange._key.interestOps(0);
+
+        } else if (isBodyDone(exchange)) {
+
+            if (buffer.hasRemaining()) {
+
+                //More bytes than the response had: this connection can't be trusted anymore
+                exchange._keep_alive = false;
+            }
+
+            complete(exchange);
+
+        } else if (exchange._eof) {
+
+            if (!exchange._chunked && exchange._content_length < 0) {
+
+                complete(exchange);
+
+            } else {
+
+                throw new IOException("Connection closed after " + exchange._received + (exchange._content_length >= 0 ? " of " + exchange._content_length : "") + " bytes");
+            }
+
+        } else {
+
+            exchange._key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private static boolean isBodyDone(Exchange exchange) {
+
+        return exchange._chunked ? exchange._body_done : exchange._content_length >= 0 && exchange._received >= exchange._content_length;
+    }
+
+    private void complete(Exchange exchange) {
+
+        exchange._state = DONE;
+
+        if (exchange._keep_alive && !exchange._eof && !exchange._cancelled) {
+
+            release(exchange);
+
+        } else {
+
+            close(exchange);
+        }
+
+        exchange._buffer = null;
+
+        exchange.onComplete();
+    }
+
+    private void fail(Exchange exchange, IOException ex) {
+
+        if (exchange._state != DONE) {
+
+            exchange._state = DONE;
+
+            close(exchange);
+
+            exchange._buffer = null;
+
+            exchange.onError(ex);
+        }
+    }
+
+    private void close(Exchange exchange) {
+
+        if (exchange._key != null) {
+
+            exchange._key.cancel();
+        }
+
+        if (exchange._channel != null) {
+
+            try {
+
+                exchange._channel.close();
+
+            } catch (IOException ex) {
+
+                getLogger(AsyncHttpEngine.class.getName()).log(Level.WARNING, null, ex);
+            }
+        }
+    }
+
+    private void release(Exchange exchange) {
+
+        ArrayDeque<IdleConnection> idle = _idle.get(exchange._route);
+
+        if (idle == null) {
+
+            idle = new ArrayDeque<>();
+
+            _idle.put(exchange._route, idle);
+        }
+
+        if (idle.size() < MAX_IDLE_CONNECTIONS) {
+
+            IdleConnection connection = new IdleConnection(exchange._route, exchange._channel, exchange._key);
+
+            /* An idle connection should never get readable: if it does the server closed it (or is talking nonsense). */
+            exchange._key.attach(connection);
+
+            exchange._key.interestOps(SelectionKey.OP_READ);
+
+            idle.add(connection);
+
+        } else {
+
+            close(exchange);
+        }
+    }
+
+    private IdleConnection pollIdle(String route) {
+
+        ArrayDeque<IdleConnection> idle = _idle.get(route);
+
+        IdleConnection connection;
+
+        while (idle != null && (connection = idle.pollLast()) != null) {
+
+            if (connection._key.isValid() && connection._channel.isOpen()) {
+
+                return connection;
+            }
+        }
+
+        return null;
+    }
+
+    private void closeIdle(IdleConnection connection) {
+
+        ArrayDeque<IdleConnection> idle = _idle.get(connection._route);
+
+        if (idle != null) {
+
+            idle.remove(connection);
+        }
+
+        connection.close();
+    }
+
+    private void expireExchanges(long now) {
+
+        for (SelectionKey key : _selector.keys()) {
+
+            if (key.isValid() && key.attachment() instanceof Exchange) {
+
+                Exchange exchange = (Exchange) key.attachment();
+
+                if (exchange._state != DONE && !exchange._suspended && now > exchange._deadline) {
+
+                    fail(exchange, exchange._state == CONNECTING ? new SocketTimeoutException("Connect timed out") : new SocketTimeoutException("Read timed out"));
+                }
+            }
+        }
+    }
+
+    private void expireIdle(long now) {
+
+        for (ArrayDeque<IdleConnection> idle : _idle.values()) {
+
+            IdleConnection connection;
+
+            while ((connection = idle.peekFirst()) != null && now - connection._since > IDLE_TIMEOUT * 1000L) {
+
+                idle.pollFirst();
+
+                connection.close();
+            }
+        }
+    }
+
+    public abstract static class Exchange implements Cancellable {
+
+        private URI _uri;
+        private ByteBuffer _request;
+        private InetSocketAddress _address;
+        private String _route;
+        private SocketChannel _channel;
+        private SelectionKey _key;
+        private ByteBuffer _buffer;
+        private int _state;
+        private int _status;
+        private long _content_length;
+        private long _received;
+        private boolean _keep_alive;
+        private boolean _reused;
+        private boolean _eof;
+        private boolean _suspended;
+        private boolean _chunked;
+        private long _chunk_remaining;
+        private boolean _trailers;
+        private boolean _body_done;
+        private int _redirects;
+        private long _deadline;
+        private volatile IOException _failure;
+        private volatile boolean _resume;
+        private volatile boolean _cancelled;
+
+        protected Exchange(URI uri) {
+
+            _redirects = 0;
+
+            _failure = null;
+
+            _resume = false;
+
+            _cancelled = false;
+
+            reset(uri);
+        }
+
+        private void reset(URI uri) {
+
+            _uri = uri;
+
+            String path = (uri.getRawPath() != null && !uri.getRawPath().isEmpty()) ? uri.getRawPath() : "/";
+
+            if (uri.getRawQuery() != null) {
+
+                path += "?" + uri.getRawQuery();
+            }
+
+            String host = uri.getHost() + (uri.getPort() != -1 && uri.getPort() != 80 ? ":" + uri.getPort() : "");
+
+            _request = ByteBuffer.wrap(("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\nUser-Agent: " + MainPanel.DEFAULT_USER_AGENT + "\r\nAccept-Encoding: identity\r\nConnection: keep-alive\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+
+            _address = null;
+
+            _channel = null;
+
+            _key = null;
+
+            _buffer = null;
+
+            _state = CONNECTING;
+
+            _status = 0;
+
+            _content_length = -1L;
+
+            _received = 0L;
+
+            _keep_alive = false;
+
+            _reused = false;
+
+            _eof = false;
+
+            _suspended = false;
+
+            _chunked = false;
+
+            _chunk_remaining = 0L;
+
+            _trailers = false;
+
+            _body_done = false;
+        }
+
+        public URI getUri() {
+            return _uri;
+        }
+
+        public int getStatus() {
+            return _status;
+        }
+
+        public boolean isCancelled() {
+            return _cancelled;
+        }
+
+        public void resume() {
+
+            _resume = true;
+
+            getInstance().wakeup(this);
+        }
+
+        @Override
+        public boolean cancel() {
+
+            _cancelled = true;
+
+            getInstance().wakeup(this);
+
+            return true;
+        }
+
+        /* All the callbacks run on the selector thread so they must never block. */
+        protected abstract boolean onResponse(int status, long content_length) throws IOException;
+
+        /* Consume what you can from data and return false to stop reading until resume() is called. */
+        protected abstract boolean onBody(ByteBuffer data) throws IOException;
+
+        protected abstract void onComplete();
+
+        protected abstract void onError(IOException ex);
+    }
+
+    private static final class IdleConnection {
+
+        private final String _route;
+        private final SocketChannel _channel;
+        private final SelectionKey _key;
+        private final long _since;
+
+        private IdleConnection(String route, SocketChannel channel, SelectionKey key) {
+            _route = route;
+            _channel = channel;
+            _key = key;
+            _since = System.currentTimeMillis();
+        }
+
+        private void close() {
+
+            _key.cancel();
+
+            try {
+
+                _channel.close();
+
+            } catch (IOException ex) {
+
+                getLogger(AsyncHttpEngine.class.getName()).log(Level.WARNING, null, ex);
+            }
+        }
+    }
+
+    private final static class LazyHolder {
+
+        private static final AsyncHttpEngine INSTANCE = new AsyncHttpEngine();
+    }
+}
@@ -0,0 +1,343 @@
+package megabasterd;
+
+import java.io.InterruptedIOException;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class BandwidthNode {
+
+    public static final int DEFAULT_WEIGHT = 1;
+    public static final int MAX_WEIGHT = 8;
+
+    private final BandwidthNode _parent;
+    private final TokenBucket _cap_bucket;
+    private final TokenBucket _min_bucket;
+    private volatile int _weight;
+    private volatile boolean _per_transfer;
+    private final ReentrantLock _share_lock;
+    private final PriorityQueue<Turn> _turns;
+    private double _virtual_time;
+    private double _virtual_finish;
+    private long _turn_seq;
+
+    public BandwidthNode(BandwidthNode parent, long cap, long min, int weight) {
+        _parent = parent;
+        _cap_bucket = new TokenBucket(cap);
+        _min_bucket = new TokenBucket(min);
+        _weight = Math.max(1, Math.min(weight, MAX_WEIGHT));
+        _per_transfer = true;
+        _share_lock = new ReentrantLock();
+        _turns = new PriorityQueue<>();
+        _virtual_time = 0d;
+        _virtual_finish = 0d;
+        _turn_seq = 0L;
+    }
+
+    public BandwidthNode getParent() {
+        return _parent;
+    }
+
+    public long getCap() {
+        return _cap_bucket.getRate();
+    }
+
+    public void setCap(long cap) {
+        _cap_bucket.setRate(cap);
+    }
+
+    public long getMin() {
+        return _min_bucket.getRate();
+    }
+
+    public void setMin(long min) {
+        _min_bucket.setRate(min);
+    }
+
+    public int getWeight() {
+        return _weight;
+    }
+
+    public void setWeight(int weight) {
+        _weight = Math.max(1, Math.min(weight, MAX_WEIGHT));
+    }
+
+    public boolean isPer_transfer() {
+        return _per_transfer;
+    }
+
+    public void setPer_transfer(boolean per_transfer) {
+        _per_transfer = per_transfer;
+    }
+
+    public boolean isLimited() {
+        return _cap_bucket.isLimited() || (_parent != null && _parent.isLimited());
+    }
+
+    public int getSlice_size(int slice_size) {
+        return slice_size * _weight;
+    }
+
+    public void consume(long bytes) throws InterruptedIOException {
+
+        consume(null, bytes);
+    }
+
+    public void charge(long bytes) {
+
+        _cap_bucket.charge(bytes);
+
+        if (_parent != null) {
+
+            _parent.charge(bytes);
+        }
+    }
+
+    public long tryConsume(Ticket ticket, long bytes, Runnable wakeup) {
+
+        /* consume() for callers that must never park: 0 means go ahead, > 0 means ask again after that many nanos and -1 means wakeup will run when it's your turn. */
+        long delay;
+
+        if (!ticket._paid) {
+
+            _cap_bucket.charge(bytes);
+
+            ticket._paid = true;
+        }
+
+        if ((delay = _cap_bucket.getDelay(0)) > 0) {
+
+            return delay;
+        }
+
+        if (_parent != null) {
+
+            if (ticket._turn == null && _min_bucket.tryConsume(bytes)) {
+
+                _parent.charge(bytes);
+
+            } else if ((delay = _parent.pollTurn(this, ticket, bytes, wakeup)) != 0) {
+
+                return delay;
+            }
+        }
+
+        ticket._paid = false;
+
+        return 0L;
+    }
+
+    public void cancelTurn(Ticket ticket) {
+
+        if (_parent != null && ticket._turn != null) {
+
+            _parent._share_lock.lock();
+
+            try {
+
+                _parent.leaveTurn(ticket._turn);
+
+                ticket._turn = null;
+
+            } finally {
+
+                _parent._share_lock.unlock();
+            }
+        }
+
+        ticket._paid = false;
+    }
+
+    public long getDelay(long bytes) {
+
+        long delay = _cap_bucket.getDelay(bytes);
+
+        return _parent != null ? Math.max(delay, _parent.getDelay(bytes)) : delay;
+    }
+
+    private void consume(BandwidthNode child, long bytes) throws InterruptedIOException {
+
+        if (child != null && _per_transfer && _cap_bucket.isLimited()) {
+
+            waitTurn(child, bytes);
+        }
+
+        _cap_bucket.consume(bytes);
+
+        if (_parent != null) {
+
+            if (_min_bucket.tryConsume(bytes)) {
+
+                /* Guaranteed bytes never wait for the parent but still use up its budget, so it is the bulk traffic which yields. */
+                _parent.charge(bytes);
+
+            } else {
+
+                _parent.consume(this, bytes);
+            }
+        }
+    }
+
+    private long pollTurn(BandwidthNode child, Ticket ticket, long bytes, Runnable wakeup) {
+
+        if (_per_transfer && _cap_bucket.isLimited()) {
+
+            _share_lock.lock();
+
+            try {
+
+                if (ticket._turn == null) {
+
+                    double start = Math.max(_virtual_time, child._virtual_finish);
+
+                    child._virtual_finish = start + (double) bytes / child.getWeight();
+
+                    ticket._turn = new Turn(start, _turn_seq++, null, wakeup);
+
+                    _turns.add(ticket._turn);
+                }
+
+                long delay;
+
+                if (_turns.peek() != ticket._turn) {
+
+                    return -1L;
+                }
+
+                if ((delay = _cap_bucket.getDelay(bytes)) > 0) {
+
+                    return delay;
+                }
+
+                _virtual_time = ticket._turn._tag;
+
+                leaveTurn(ticket._turn);
+
+                ticket._turn = null;
+
+            } finally {
+
+                _share_lock.unlock();
+            }
+
+        } else if (ticket._turn != null) {
+
+            child.cancelTurn(ticket);
+        }
+
+        charge(bytes);
+
+        return 0L;
+    }
+
+    private void leaveTurn(Turn turn) {
+
+        _turns.remove(turn);
+
+        Turn head = _turns.peek();
+
+        if (head != null) {
+
+            if (head._ready != null) {
+
+                head._ready.signal();
+
+            } else {
+
+                //Callers that can't park are given a callback which must not block either
+                head._wakeup.run();
+            }
+        }
+    }
+
+    private void waitTurn(BandwidthNode child, long bytes) throws InterruptedIOException {
+
+        /* Start-time fair queuing: every child gets the bucket in proportion to its weight no matter how many connections it has. */
+        _share_lock.lock();
+
+        Turn turn = null;
+
+        try {
+
+            double start = Math.max(_virtual_time, child._virtual_finish);
+
+            child._virtual_finish = start + (double) bytes / child.getWeight();
+
+            turn = new Turn(start, _turn_seq++, _share_lock.newCondition(), null);
+
+            _turns.add(turn);
+
+            long delay = 0L;
+
+            while (_turns.peek() != turn || (delay = _cap_bucket.getDelay(bytes)) > 0) {
+
+                if (_turns.peek() != turn) {
+
+                    //Only the head is ever signalled, the rest sleep until the turn before them is gone
+                    turn._ready.await();
+
+                } else {
+
+                    //A higher cap may arrive while the head sleeps: it checks again at least every MAX_PARK_NANOS
+                    turn._ready.await(Math.min(delay, TokenBucket.MAX_PARK_NANOS), TimeUnit.NANOSECONDS);
+                }
+            }
+
+            _virtual_time = start;
+
+        } catch (InterruptedException ex) {
+
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException();
+
+        } finally {
+
+            if (turn != null) {
+
+                leaveTurn(turn);
+            }
+
+            _share_lock.unlock();
+        }
+    }
+
+    public static final class Ticket {
+
+        private Turn _turn;
+        private boolean _paid;
+
+        public Ticket() {
+            _turn = null;
+            _paid = false;
+        }
+    }
+
+    private static final class Turn implements Comparable<Turn> {
+
+        private final double _tag;
+        private final long _seq;
+        private final Condition _ready;
+        private final Runnable _wakeup;
+
+        private Turn(double tag, long seq, Condition ready, Runnable wakeup) {
+            _tag = tag;
+            _seq = seq;
+            _ready = ready;
+            _wakeup = wakeup;
+        }
+
+        @Override
+        public int compareTo(Turn other) {
+
+            int c = Double.compare(_tag, other._tag);
+
+            return c != 0 ? c : Long.compare(_seq, other._seq);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package megabasterd;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import static java.lang.String.valueOf;
+import java.nio.ByteBuffer;
 
 /**
  *
@@ -13,8 +15,11 @@ public final class Chunk {
     private final long _id;
     private final long _offset;
     private final long _size;
-    private final ByteArrayOutputStream _data_os;
+    private final ByteBuffer _data;
+    private final ChunkOutputStream _data_os;
     private final String _url;
+    private volatile boolean _released;
+    private int[] _mac;
 
     public Chunk(long id, long file_size, String file_url) throws ChunkInvalidIdException {
         _id = id;
@@ -38,14 +43,18 @@ public final class Chunk {
 
         _url = file_url != null ? file_url + "/" + _offset + "-" + (_offset + _size - 1) : null;
 
-        _data_os = new ByteArrayOutputStream((int) _size);
+        _data = ChunkBufferPool.getInstance().lease((int) _size);
+
+        _data_os = new ChunkOutputStream();
+
+        _released = false;
     }
 
     public long getOffset() {
         return _offset;
     }
 
-    public ByteArrayOutputStream getOutputStream() {
+    public ChunkOutputStream getOutputStream() {
         return _data_os;
     }
 
@@ -61,24 +70,161 @@ public final class Chunk {
         return _url;
     }
 
-    public ByteArrayInputStream getInputStream() {
-        return new ByteArrayInputStream(_data_os.toByteArray());
+    public int[] getMac() {
+        return _mac;
     }
 
-    private long calculateSize(long file_size) {
-        long chunk_size = (_id >= 1 && _id <= 7) ? _id * 128 * 1024 : 1024 * 1024;
+    public void setMac(int[] mac) {
+        _mac = mac;
+    }
+
+    public InputStream getInputStream() {
+        return new ChunkInputStream(getData());
+    }
+
+    public ByteBuffer getData() {
+
+        ByteBuffer data = _data.duplicate();
+
+        data.position(0);
+
+        data.limit(_data_os.size());
+
+        return data;
+    }
+
+    public synchronized void release() {
+
+        if (!_released) {
+
+            _released = true;
+
+            ChunkBufferPool.getInstance().release(_data);
+        }
+    }
+
+    public boolean isReleased() {
+        return _released;
+    }
+
+    public static long calculateChunkSize(long id, long file_size) {
+        long offset = calculateChunkOffset(id);
+
+        long chunk_size = (id >= 1 && id <= 7) ? id * 128 * 1024 : 1024 * 1024;
 
-        if (_offset + chunk_size > file_size) {
-            chunk_size = file_size - _offset;
+        if (offset + chunk_size > file_size) {
+            chunk_size = file_size - offset;
         }
 
         return chunk_size;
     }
 
-    private long calculateOffset() {
+    public static long calculateChunkOffset(long id) {
         long[] offs = {0, 128, 384, 768, 1280, 1920, 2688};
 
-        return (_id <= 7 ? offs[(int) _id - 1] : (3584 + (_id - 8) * 1024)) * 1024;
+        return (id <= 7 ? offs[(int) id - 1] : (3584 + (id - 8) * 1024)) * 1024;
+    }
+
+    public static long calculateLastChunkId(long file_size) {
+
+        if (file_size > 3584 * 1024) {
+            return 7 + (file_size - 3584 * 1024 + 1024 * 1024 - 1) / (1024 * 1024);
+        }
+
+        long id = 1;
+
+        while (id < 7 && calculateChunkOffset(id + 1) < file_size) {
+            id++;
+        }
+
+        return id;
+    }
+
+    private long calculateSize(long file_size) {
+        return calculateChunkSize(_id, file_size);
+    }
+
+    private long calculateOffset() {
+        return calculateChunkOffset(_id);
+    }
+
+    public final class ChunkOutputStream extends OutputStream {
+
+        public int size() {
+            return _data.position();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+
+            if (!_data.hasRemaining()) {
+                throw new IOException("Chunk " + _id + " overflow!");
+            }
+
+            _data.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            if (len > _data.remaining()) {
+                throw new IOException("Chunk " + _id + " overflow!");
+            }
+
+            _data.put(b, off, len);
+        }
+
+        public void write(ByteBuffer src, int len) throws IOException {
+
+            if (len > _data.remaining()) {
+                throw new IOException("Chunk " + _id + " overflow!");
+            }
+
+            //Direct and read-only buffers have no array to copy from
+            ByteBuffer slice = src.duplicate();
+
+            slice.limit(slice.position() + len);
+
+            _data.put(slice);
+
+            src.position(slice.position());
+        }
     }
 
+    private static final class ChunkInputStream extends InputStream {
+
+        private final ByteBuffer _view;
+
+        public ChunkInputStream(ByteBuffer view) {
+            _view = view;
+        }
+
+        @Override
+        public int read() {
+            return _view.hasRemaining() ? (_view.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!_view.hasRemaining()) {
+                return -1;
+            }
+
+            int reads = Math.min(len, _view.remaining());
+
+            _view.get(b, off, reads);
+
+            return reads;
+        }
+
+        @Override
+        public int available() {
+            return _view.remaining();
+        }
+    }
 }
@@ -0,0 +1,215 @@
+package megabasterd;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import static java.util.logging.Logger.getLogger;
+import static megabasterd.DBTools.selectIntSettingValueFromDB;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class ChunkBufferPool {
+
+    public static final int SIZE_CLASS = 128 * 1024;
+    public static final int MAX_CHUNK_SIZE = 1024 * 1024;
+    public static final int MAX_POOLED_BUFFERS_PER_CLASS = 64;
+    public static final int TRANSFER_MEMORY_DEFAULT = 256;
+    public static final int MIN_TRANSFER_MEMORY = 16;
+    public static final int MAX_BUDGET_WAIT = 30;
+
+    private final List<ConcurrentLinkedQueue<ByteBuffer>> _free_buffers;
+    private final AtomicIntegerArray _free_count;
+    private final ReentrantLock _budget_lock;
+    private final Condition _budget_released;
+    private final long _budget;
+    private long _reserved_bytes;
+    private int _waiting;
+
+    public static ChunkBufferPool getInstance() {
+
+        return LazyHolder.INSTANCE;
+    }
+
+    private ChunkBufferPool() {
+
+        int classes = MAX_CHUNK_SIZE / SIZE_CLASS;
+
+        _free_buffers = new ArrayList<>(classes + 1);
+
+        for (int i = 0; i <= classes; i++) {
+            _free_buffers.add(new ConcurrentLinkedQueue<ByteBuffer>());
+        }
+
+        _free_count = new AtomicIntegerArray(classes + 1);
+
+        _budget_lock = new ReentrantLock();
+
+        _budget_released = _budget_lock.newCondition();
+
+        _budget = Math.max(MIN_TRANSFER_MEMORY, selectIntSettingValueFromDB("max_transfer_memory", TRANSFER_MEMORY_DEFAULT)) * 1024L * 1024L;
+
+        _reserved_bytes = 0L;
+
+        _waiting = 0;
+    }
+
+    public long getBudget() {
+        return _budget;
+    }
+
+    public long getReserved_bytes() {
+
+        _budget_lock.lock();
+
+        try {
+
+            return _reserved_bytes;
+
+        } finally {
+
+            _budget_lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+
+        _budget_lock.lock();
+
+        try {
+
+            return _waiting;
+
+        } finally {
+
+            _budget_lock.unlock();
+        }
+    }
+
+    public boolean reserve(long bytes) {
+
+        boolean within_budget = true;
+
+        _budget_lock.lock();
+
+        try {
+
+            if (_reserved_bytes > 0 && _reserved_bytes + bytes > _budget) {
+
+                long deadline = System.currentTimeMillis() + MAX_BUDGET_WAIT * 1000L, remaining;
+
+                _waiting++;
+
+                try {
+
+                    while (_reserved_bytes > 0 && _reserved_bytes + bytes > _budget && (remaining = deadline - System.currentTimeMillis()) > 0) {
+
+                        _budget_released.await(remaining, TimeUnit.MILLISECONDS);
+                    }
+
+                } catch (InterruptedException ex) {
+
+                    Thread.currentThread().interrupt();
+
+                } finally {
+
+                    _waiting--;
+                }
+
+                //Past MAX_BUDGET_WAIT we overrun on purpose: whoever holds the budget may be waiting on us (an uploader keeps its chunk while asking for the crypt buffer)
+                //so failing could deadlock every worker. Returning false makes lease() use a heap buffer, so the overrun never eats direct memory.
+                if (_reserved_bytes > 0 && _reserved_bytes + bytes > _budget) {
+
+                    within_budget = false;
+
+                    getLogger(ChunkBufferPool.class.getName()).log(Level.FINE, "Transfer memory budget exceeded ({0}/{1})", new Object[]{MiscTools.formatBytes(_reserved_bytes + bytes), MiscTools.formatBytes(_budget)});
+                }
+            }
+
+            _reserved_bytes += bytes;
+
+        } finally {
+
+            _budget_lock.unlock();
+        }
+
+        return within_budget;
+    }
+
+    public void unreserve(long bytes) {
+
+        _budget_lock.lock();
+
+        try {
+
+            _reserved_bytes -= bytes;
+
+            _budget_released.signalAll();
+
+        } finally {
+
+            _budget_lock.unlock();
+        }
+    }
+
+    public ByteBuffer lease(int size) {
+
+        int size_class = sizeClass(size);
+
+        boolean within_budget = reserve((long) size_class * SIZE_CLASS);
+
+        ByteBuffer buffer = null;
+
+        if (size_class < _free_buffers.size() && (buffer = _free_buffers.get(size_class).poll()) != null) {
+
+            _free_count.decrementAndGet(size_class);
+        }
+
+        if (buffer == null) {
+
+            buffer = within_budget ? ByteBuffer.allocateDirect(size_class * SIZE_CLASS) : ByteBuffer.allocate(size_class * SIZE_CLASS);
+        }
+
+        buffer.clear();
+
+        buffer.limit(size);
+
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+
+        int size_class = buffer.capacity() / SIZE_CLASS;
+
+        unreserve(buffer.capacity());
+
+        if (buffer.isDirect() && size_class > 0 && size_class < _free_buffers.size() && buffer.capacity() == size_class * SIZE_CLASS) {
+
+            if (_free_count.incrementAndGet(size_class) <= MAX_POOLED_BUFFERS_PER_CLASS) {
+
+                _free_buffers.get(size_class).add(buffer);
+
+            } else {
+
+                _free_count.decrementAndGet(size_class);
+            }
+        }
+    }
+
+    private int sizeClass(int size) {
+
+        return Math.max(1, (size + SIZE_CLASS - 1) / SIZE_CLASS);
+    }
+
+    private final static class LazyHolder {
+
+        private static final ChunkBufferPool INSTANCE = new ChunkBufferPool();
+    }
+}
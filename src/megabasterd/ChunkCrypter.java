@@ -0,0 +1,63 @@
+package megabasterd;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class ChunkCrypter {
+
+    private final Cipher _cipher;
+    private final SecretKeySpec _key;
+    private final byte[] _iv;
+    private final int _mode;
+
+    public ChunkCrypter(int mode, byte[] key, byte[] iv) throws NoSuchAlgorithmException, NoSuchPaddingException {
+        _mode = mode;
+        _key = new SecretKeySpec(key, "AES");
+        _iv = iv;
+        _cipher = Cipher.getInstance("AES/CTR/NoPadding");
+    }
+
+    public void reset(long offset) throws InvalidKeyException, InvalidAlgorithmParameterException {
+
+        _cipher.init(_mode, _key, new IvParameterSpec(offset > 0 ? CryptTools.forwardMEGALinkKeyIV(_iv, offset) : _iv));
+    }
+
+    public int update(ByteBuffer in, ByteBuffer out) throws ShortBufferException {
+
+        return _cipher.update(in, out);
+    }
+
+    public int update(byte[] buffer, int offset, int len) throws ShortBufferException {
+
+        return len > 0 ? _cipher.update(buffer, offset, len, buffer, offset) : 0;
+    }
+
+    public int update(ByteBuffer in, byte[] out, int len) throws ShortBufferException {
+
+        ByteBuffer slice = in.duplicate();
+
+        slice.limit(slice.position() + len);
+
+        in.position(slice.limit());
+
+        return _cipher.update(slice, ByteBuffer.wrap(out, 0, len));
+    }
+
+    public void crypt(Chunk chunk) throws InvalidKeyException, InvalidAlgorithmParameterException, ShortBufferException {
+
+        reset(chunk.getOffset());
+
+        update(chunk.getData(), chunk.getData());
+    }
+}
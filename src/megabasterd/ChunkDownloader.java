@@ -4,11 +4,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
 import static megabasterd.MainPanel.THROTTLE_SLICE_SIZE;
+import static megabasterd.MiscTools.bin2i32a;
 import static megabasterd.MiscTools.getWaitTimeExpBackOff;
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -23,17 +34,23 @@ public class ChunkDownloader implements Runnable, SecureSingleThreadNotifiable {
     private final int _id;
     private final Download _download;
     private volatile boolean _exit;
-    private final Object _secure_notify_lock;
+    private final ReentrantLock _secure_notify_lock;
+    private final Condition _secure_notify_condition;
     private volatile boolean _error_wait;
+    private volatile boolean _stalled;
     private boolean _notified;
+    private volatile CountDownLatch _idle_wait;
 
     public ChunkDownloader(int id, Download download) {
         _notified = false;
+        _idle_wait = null;
         _exit = false;
-        _secure_notify_lock = new Object();
+        _secure_notify_lock = new ReentrantLock();
+        _secure_notify_condition = _secure_notify_lock.newCondition();
         _id = id;
         _download = download;
         _error_wait = false;
+        _stalled = false;
     }
 
     public void setExit(boolean exit) {
@@ -60,24 +77,45 @@ public class ChunkDownloader implements Runnable, SecureSingleThreadNotifiable {
         _error_wait = error_wait;
     }
 
+    public boolean isStalled() {
+        return _stalled;
+    }
+
     @Override
     public void secureNotify() {
-        synchronized (_secure_notify_lock) {
+
+        _secure_notify_lock.lock();
+
+        try {
 
             _notified = true;
 
-            _secure_notify_lock.notify();
+            _secure_notify_condition.signal();
+
+        } finally {
+
+            _secure_notify_lock.unlock();
+        }
+
+        CountDownLatch idle_wait = _idle_wait;
+
+        if (idle_wait != null) {
+
+            idle_wait.countDown();
         }
     }
 
     @Override
     public void secureWait() {
 
-        synchronized (_secure_notify_lock) {
+        _secure_notify_lock.lock();
+
+        try {
+
             while (!_notified) {
 
                 try {
-                    _secure_notify_lock.wait();
+                    _secure_notify_condition.await();
                 } catch (InterruptedException ex) {
                     _exit = true;
                     getLogger(ChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
@@ -85,21 +123,44 @@ public class ChunkDownloader implements Runnable, SecureSingleThreadNotifiable {
             }
 
             _notified = false;
+
+        } finally {
+
+            _secure_notify_lock.unlock();
         }
     }
 
+    protected int rejectChunkIds(ArrayList<Long> chunk_ids, int from_index) {
+
+        for (int i = from_index; i < chunk_ids.size(); i++) {
+
+            _download.rejectChunkId(chunk_ids.get(i));
+        }
+
+        return chunk_ids.size();
+    }
+
     @Override
     public void run() {
         String worker_url = null;
         Chunk chunk;
-        int reads, conta_error, http_status;
+        ArrayList<Long> chunk_ids;
+        int reads, conta_error, http_status, chunk_index;
+        long last_chunk_id, range_bytes, request_time, response_time;
         byte[] buffer = new byte[THROTTLE_SLICE_SIZE];
         InputStream is;
-        boolean error;
+        boolean error, paused, url_error = false;
 
         System.out.println("Worker [" + _id + "]: let's do some work!");
 
         try (CloseableHttpClient httpclient = MiscTools.getApacheKissHttpClient()) {
+
+            ChunkCrypter crypter = new ChunkCrypter(Cipher.DECRYPT_MODE, _download.getChunkwriter().getByte_file_key(), _download.getChunkwriter().getByte_iv());
+
+            ChunkMACEngine mac_engine = new ChunkMACEngine(_download.getChunkwriter().getByte_file_key(), bin2i32a(_download.getChunkwriter().getByte_iv()));
+
+            ChunkRangePlanner range_planner = new ChunkRangePlanner();
+
             conta_error = 0;
 
             error = false;
@@ -107,20 +168,71 @@ public class ChunkDownloader implements Runnable, SecureSingleThreadNotifiable {
             while (!_exit && !_download.isStopped()) {
                 if (worker_url == null || error) {
 
-                    worker_url = _download.getDownloadUrlForWorker();
+                    worker_url = url_error ? _download.renewDownloadUrlForWorker(worker_url) : _download.getDownloadUrlForWorker();
+
+                    url_error = false;
+                }
+
+                long generation = _download.getEndgame().getGeneration();
+
+                chunk_ids = _download.nextChunkIdRun(range_planner.getRange_size());
+
+                if (chunk_ids.isEmpty()) {
+
+                    final CountDownLatch idle_wait = new CountDownLatch(1);
+
+                    _idle_wait = idle_wait;
+
+                    if (_download.getEndgame().waitForWork(generation, new Runnable() {
+                        @Override
+                        public void run() {
+                            idle_wait.countDown();
+                        }
+                    }) && !_exit && !_download.isStopped()) {
+
+                        try {
+
+                            idle_wait.await();
+
+                        } catch (InterruptedException ex) {
+                            getLogger(ChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
+                        }
+                    }
+
+                    _idle_wait = null;
+
+                    continue;
                 }
 
-                chunk = new Chunk(_download.nextChunkId(), _download.getFile_size(), worker_url);
+                chunk_index = 0;
+
+                chunk = new Chunk(chunk_ids.get(0), _download.getFile_size(), null);
+
+                last_chunk_id = chunk_ids.get(chunk_ids.size() - 1);
+
+                HttpGet httpget = new HttpGet(new URI(worker_url + "/" + chunk.getOffset() + "-" + (Chunk.calculateChunkOffset(last_chunk_id) + Chunk.calculateChunkSize(last_chunk_id, _download.getFile_size()) - 1)));
 
-                HttpGet httpget = new HttpGet(new URI(chunk.getUrl()));
+                _download.getEndgame().register(chunk_ids, httpget);
+
+                _download.getEndgame().startFetch(chunk.getId(), httpget);
+
+                TransferWatchdog.Watch watch = TransferWatchdog.getInstance().watch(_download, httpget);
 
                 error = false;
 
+                paused = false;
+
+                range_bytes = 0;
+
+                request_time = System.nanoTime();
+
                 try (CloseableHttpResponse httpresponse = httpclient.execute(httpget)) {
 
+                    response_time = System.nanoTime();
+
                     if (!_exit && !_download.isStopped()) {
 
-                        is = new ThrottledInputStream(httpresponse.getEntity().getContent(), _download.getMain_panel().getStream_supervisor());
+                        is = new ThrottledInputStream(httpresponse.getEntity().getContent(), _download.getBandwidth_node(), _download.getMain_panel().getStream_supervisor().getSlice_size());
 
                         http_status = httpresponse.getStatusLine().getStatusCode();
 
@@ -129,42 +241,102 @@ public class ChunkDownloader implements Runnable, SecureSingleThreadNotifiable {
 
                             error = true;
 
+                            url_error = DownloadUrlLeaseManager.isUrlError(http_status);
+
                         } else {
 
-                            while (!_exit && !_download.isStopped() && !_download.getChunkwriter().isExit() && chunk.getOutputStream().size() < chunk.getSize() && (reads = is.read(buffer)) != -1) {
+                            while (chunk != null && !error) {
+
+                                while (!_exit && !_download.isStopped() && !_download.getChunkwriter().isExit() && chunk.getOutputStream().size() < chunk.getSize() && (reads = is.read(buffer, 0, (int) Math.min(buffer.length, chunk.getSize() - chunk.getOutputStream().size()))) != -1) {
+
+                                    chunk.getOutputStream().write(buffer, 0, reads);
 
-                                chunk.getOutputStream().write(buffer, 0, reads);
+                                    watch.addBytes(reads);
 
-                                _download.getPartialProgressQueue().add(reads);
+                                    _download.getPartialProgress().add(reads);
 
-                                _download.getProgress_meter().secureNotify();
+                                    if (_download.isPaused() && !_download.isStopped()) {
 
-                                if (_download.isPaused() && !_download.isStopped()) {
+                                        paused = true;
 
-                                    _download.pause_worker();
+                                        _download.pause_worker();
 
-                                    secureWait();
+                                        secureWait();
+                                    }
                                 }
-                            }
 
-                            is.close();
+                                if (chunk.getOutputStream().size() < chunk.getSize()) {
+
+                                    if (chunk.getOutputStream().size() > 0) {
+                                        _download.getPartialProgress().add(-1 * chunk.getOutputStream().size());
+
+                                    }
+
+                                    error = true;
+
+                                } else {
+
+                                    System.out.println("Worker [" + _id + "] has downloaded chunk [" + chunk.getId() + "]!");
+
+                                    crypter.crypt(chunk);
+
+                                    chunk.setMac(mac_engine.chunkMAC(chunk.getData()));
+
+                                    range_bytes += chunk.getSize();
+
+                                    if (!_download.isChunkDone(chunk.getId()) && _download.getChunkwriter().getChunk_queue().putIfAbsent(chunk.getId(), chunk) == null) {
+
+                                        _download.getEndgame().chunkDone(chunk.getId(), httpget);
+
+                                        _download.getChunkwriter().secureNotify();
 
-                            if (chunk.getOutputStream().size() < chunk.getSize()) {
+                                    } else {
 
-                                if (chunk.getOutputStream().size() > 0) {
-                                    _download.getPartialProgressQueue().add(-1 * chunk.getOutputStream().size());
+                                        System.out.println("Worker [" + _id + "] chunk [" + chunk.getId() + "] was already downloaded by another worker");
 
-                                    _download.getProgress_meter().secureNotify();
+                                        _download.getPartialProgress().add(-1 * chunk.getOutputStream().size());
 
+                                        chunk.release();
+                                    }
+
+                                    conta_error = 0;
+
+                                    //It belongs to the writer now: if the next buffer can't be allocated, the finally must not release this one
+                                    chunk = null;
+
+                                    if (++chunk_index < chunk_ids.size()) {
+
+                                        chunk = new Chunk(chunk_ids.get(chunk_index), _download.getFile_size(), null);
+
+                                        _download.getEndgame().startFetch(chunk.getId(), httpget);
+                                    }
                                 }
+                            }
 
-                                error = true;
+                            is.close();
+
+                            if (!error && !paused) {
+
+                                range_planner.sample(range_bytes, response_time - request_time, System.nanoTime() - response_time);
                             }
                         }
 
                         if (error && !_download.isStopped()) {
 
-                            _download.rejectChunkId(chunk.getId());
+                            chunk_index = rejectChunkIds(chunk_ids, chunk_index);
+
+                            _download.getEndgame().unregister(chunk_ids, httpget);
+                        }
+
+                        if (error && !_download.isStopped() && (!httpget.isAborted() || watch.isStalled())) {
+
+                            range_planner.error();
+
+                            _download.getSlot_errors().incrementAndGet();
+
+                            if (http_status == 509) {
+                                _download.getBandwidth_errors().incrementAndGet();
+                            }
 
                             conta_error++;
 
@@ -180,38 +352,55 @@ public class ChunkDownloader implements Runnable, SecureSingleThreadNotifiable {
 
                                 _download.getView().updateSlotsStatus();
                             }
+                        }
+                    }
 
-                        } else if (!error) {
-
-                            System.out.println("Worker [" + _id + "] has downloaded chunk [" + chunk.getId() + "]!");
-
-                            _download.getChunkwriter().getChunk_queue().put(chunk.getId(), chunk);
+                } catch (IOException ex) {
+                    error = true;
 
-                            _download.getChunkwriter().secureNotify();
+                    if (chunk != null && chunk.getOutputStream().size() > 0) {
+                        _download.getPartialProgress().add(-1 * chunk.getOutputStream().size());
+                    }
 
-                            conta_error = 0;
-                        }
+                    if (httpget.isAborted() && !watch.isStalled()) {
 
-                    } else if (_exit) {
+                        System.out.println("Worker [" + _id + "] duplicate request aborted (chunk already downloaded by another worker)");
 
-                        _download.rejectChunkId(chunk.getId());
-                    }
-                } catch (IOException ex) {
-                    error = true;
+                    } else {
 
-                    _download.rejectChunkId(chunk.getId());
+                        range_planner.error();
 
-                    if (chunk.getOutputStream().size() > 0) {
-                        _download.getPartialProgressQueue().add(-1 * chunk.getOutputStream().size());
+                        _download.getSlot_errors().incrementAndGet();
 
-                        _download.getProgress_meter().secureNotify();
+                        getLogger(ChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
                     }
 
+                } catch (InvalidKeyException | InvalidAlgorithmParameterException | ShortBufferException ex) {
+                    _download.emergencyStopDownloader(ex.getMessage());
+
                     getLogger(ChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
 
                 } catch (InterruptedException ex) {
                     getLogger(ChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
 
+                } finally {
+
+                    if (chunk != null) {
+                        chunk.release();
+                    }
+
+                    rejectChunkIds(chunk_ids, chunk_index);
+
+                    _download.getEndgame().unregister(chunk_ids, httpget);
+
+                    watch.close();
+
+                    if (_stalled != watch.isStalled()) {
+
+                        _stalled = watch.isStalled();
+
+                        _download.getView().updateSlotsStatus();
+                    }
                 }
             }
 
@@ -222,6 +411,9 @@ public class ChunkDownloader implements Runnable, SecureSingleThreadNotifiable {
             getLogger(ChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
         } catch (URISyntaxException ex) {
             Logger.getLogger(ChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException ex) {
+            _download.emergencyStopDownloader(ex.getMessage());
+            getLogger(ChunkDownloader.class.getName()).log(Level.SEVERE, null, ex);
         }
 
         _download.stopThisSlot(this);
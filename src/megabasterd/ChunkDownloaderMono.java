@@ -4,11 +4,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
 import static megabasterd.MainPanel.THROTTLE_SLICE_SIZE;
+import static megabasterd.MiscTools.bin2i32a;
 import static megabasterd.MiscTools.getWaitTimeExpBackOff;
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -29,14 +36,20 @@ public class ChunkDownloaderMono extends ChunkDownloader {
         String worker_url = null;
         Chunk chunk;
         int reads, max_reads, conta_error, http_status = 200;
+        long next_offset = -1;
         byte[] buffer = new byte[THROTTLE_SLICE_SIZE];
-        boolean error;
+        boolean error, url_error = false;
         HttpGet httpget = null;
         CloseableHttpResponse httpresponse = null;
 
         System.out.println("Worker [" + getId() + "]: let's do some work!");
 
         try (CloseableHttpClient httpclient = MiscTools.getApacheKissHttpClient()) {
+
+            ChunkCrypter crypter = new ChunkCrypter(Cipher.DECRYPT_MODE, getDownload().getChunkwriter().getByte_file_key(), getDownload().getChunkwriter().getByte_iv());
+
+            ChunkMACEngine mac_engine = new ChunkMACEngine(getDownload().getChunkwriter().getByte_file_key(), bin2i32a(getDownload().getChunkwriter().getByte_iv()));
+
             conta_error = 0;
 
             error = false;
@@ -46,7 +59,9 @@ public class ChunkDownloaderMono extends ChunkDownloader {
             while (!isExit() && !getDownload().isStopped()) {
                 if (worker_url == null || error) {
 
-                    worker_url = getDownload().getDownloadUrlForWorker();
+                    worker_url = url_error ? getDownload().renewDownloadUrlForWorker(worker_url) : getDownload().getDownloadUrlForWorker();
+
+                    url_error = false;
 
                     if (httpresponse != null) {
                         httpresponse.close();
@@ -55,100 +70,133 @@ public class ChunkDownloaderMono extends ChunkDownloader {
 
                 chunk = new Chunk(getDownload().nextChunkId(), getDownload().getFile_size(), null);
 
-                if (httpget == null || error) {
+                boolean chunk_queued = false;
 
-                    httpget = new HttpGet(new URI(worker_url + "/" + chunk.getOffset()));
+                try {
 
-                    httpresponse = httpclient.execute(httpget);
+                    if (httpget == null || error || chunk.getOffset() != next_offset) {
 
-                    is = new ThrottledInputStream(httpresponse.getEntity().getContent(), getDownload().getMain_panel().getStream_supervisor());
+                        if (httpresponse != null && !error) {
+                            httpresponse.close();
+                        }
 
-                    http_status = httpresponse.getStatusLine().getStatusCode();
-                }
+                        httpget = new HttpGet(new URI(worker_url + "/" + chunk.getOffset()));
+
+                        httpresponse = httpclient.execute(httpget);
+
+                        is = new ThrottledInputStream(httpresponse.getEntity().getContent(), getDownload().getBandwidth_node(), getDownload().getMain_panel().getStream_supervisor().getSlice_size());
+
+                        http_status = httpresponse.getStatusLine().getStatusCode();
+                    }
 
-                error = false;
+                    error = false;
 
-                if (http_status != HttpStatus.SC_OK) {
+                    if (http_status != HttpStatus.SC_OK) {
 
-                    System.out.println("Failed : HTTP error code : " + http_status);
+                        System.out.println("Failed : HTTP error code : " + http_status);
 
-                    error = true;
+                        error = true;
 
-                } else {
+                        url_error = DownloadUrlLeaseManager.isUrlError(http_status);
 
-                    try {
+                        getDownload().rejectChunkId(chunk.getId());
 
-                        if (!isExit() && !getDownload().isStopped() && is != null) {
+                    } else {
 
-                            while (!getDownload().isStopped() && !getDownload().getChunkwriter().isExit() && chunk.getOutputStream().size() < chunk.getSize() && (reads = is.read(buffer, 0, (max_reads = (int) (chunk.getSize() - chunk.getOutputStream().size())) <= buffer.length ? max_reads : buffer.length)) != -1) {
-                                chunk.getOutputStream().write(buffer, 0, reads);
+                        try {
 
-                                getDownload().getPartialProgressQueue().add(reads);
+                            if (!isExit() && !getDownload().isStopped() && is != null) {
 
-                                getDownload().getProgress_meter().secureNotify();
+                                while (!getDownload().isStopped() && !getDownload().getChunkwriter().isExit() && chunk.getOutputStream().size() < chunk.getSize() && (reads = is.read(buffer, 0, (max_reads = (int) (chunk.getSize() - chunk.getOutputStream().size())) <= buffer.length ? max_reads : buffer.length)) != -1) {
+                                    chunk.getOutputStream().write(buffer, 0, reads);
 
-                                if (getDownload().isPaused() && !getDownload().isStopped()) {
+                                    getDownload().getPartialProgress().add(reads);
 
-                                    getDownload().pause_worker_mono();
+                                    if (getDownload().isPaused() && !getDownload().isStopped()) {
 
-                                    secureWait();
+                                        getDownload().pause_worker_mono();
+
+                                        secureWait();
+                                    }
                                 }
-                            }
 
-                            if (chunk.getOutputStream().size() < chunk.getSize()) {
+                                if (chunk.getOutputStream().size() < chunk.getSize()) {
 
-                                if (chunk.getOutputStream().size() > 0) {
-                                    getDownload().getPartialProgressQueue().add(-1 * chunk.getOutputStream().size());
+                                    if (chunk.getOutputStream().size() > 0) {
+                                        getDownload().getPartialProgress().add(-1 * chunk.getOutputStream().size());
+                                    }
 
-                                    getDownload().getProgress_meter().secureNotify();
+                                    error = true;
                                 }
 
-                                error = true;
-                            }
+                                if (error && !getDownload().isStopped()) {
 
-                            if (error && !getDownload().isStopped()) {
+                                    getDownload().rejectChunkId(chunk.getId());
 
-                                getDownload().rejectChunkId(chunk.getId());
+                                    conta_error++;
+
+                                    if (!isExit()) {
+
+                                        setError_wait(true);
 
-                                conta_error++;
+                                        Thread.sleep(getWaitTimeExpBackOff(conta_error) * 1000);
 
-                                if (!isExit()) {
+                                        setError_wait(false);
+                                    }
 
-                                    setError_wait(true);
+                                } else if (!error) {
 
-                                    Thread.sleep(getWaitTimeExpBackOff(conta_error) * 1000);
+                                    crypter.crypt(chunk);
 
-                                    setError_wait(false);
+                                    chunk.setMac(mac_engine.chunkMAC(chunk.getData()));
+
+                                    getDownload().getChunkwriter().getChunk_queue().put(chunk.getId(), chunk);
+
+                                    chunk_queued = true;
+
+                                    getDownload().getChunkwriter().secureNotify();
+
+                                    next_offset = chunk.getOffset() + chunk.getSize();
+
+                                    conta_error = 0;
                                 }
 
-                            } else if (!error) {
+                            } else if (isExit()) {
 
-                                getDownload().getChunkwriter().getChunk_queue().put(chunk.getId(), chunk);
+                                getDownload().rejectChunkId(chunk.getId());
+                            }
+                        } catch (IOException ex) {
+                            error = true;
 
-                                getDownload().getChunkwriter().secureNotify();
+                            getDownload().rejectChunkId(chunk.getId());
 
-                                conta_error = 0;
+                            if (chunk.getOutputStream().size() > 0) {
+                                getDownload().getPartialProgress().add(-1 * chunk.getOutputStream().size());
                             }
 
-                        } else if (isExit()) {
+                            getLogger(ChunkDownloaderMono.class.getName()).log(Level.SEVERE, null, ex);
 
-                            getDownload().rejectChunkId(chunk.getId());
+                        } catch (InvalidKeyException | InvalidAlgorithmParameterException | ShortBufferException ex) {
+                            getDownload().emergencyStopDownloader(ex.getMessage());
+
+                            getLogger(ChunkDownloaderMono.class.getName()).log(Level.SEVERE, null, ex);
+
+                        } catch (InterruptedException ex) {
+                            getLogger(ChunkDownloaderMono.class.getName()).log(Level.SEVERE, null, ex);
                         }
-                    } catch (IOException ex) {
-                        error = true;
+                    }
 
-                        getDownload().rejectChunkId(chunk.getId());
+                } catch (IOException ex) {
 
-                        if (chunk.getOutputStream().size() > 0) {
-                            getDownload().getPartialProgressQueue().add(-1 * chunk.getOutputStream().size());
+                    //The request could not even be sent: someone else must download this chunk
+                    getDownload().rejectChunkId(chunk.getId());
 
-                            getDownload().getProgress_meter().secureNotify();
-                        }
+                    throw ex;
 
-                        getLogger(ChunkDownloaderMono.class.getName()).log(Level.SEVERE, null, ex);
+                } finally {
 
-                    } catch (InterruptedException ex) {
-                        getLogger(ChunkDownloaderMono.class.getName()).log(Level.SEVERE, null, ex);
+                    if (!chunk_queued) {
+                        chunk.release();
                     }
                 }
             }
@@ -163,6 +211,9 @@ public class ChunkDownloaderMono extends ChunkDownloader {
 
         } catch (URISyntaxException ex) {
             Logger.getLogger(ChunkDownloaderMono.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException ex) {
+            getDownload().emergencyStopDownloader(ex.getMessage());
+            getLogger(ChunkDownloaderMono.class.getName()).log(Level.SEVERE, null, ex);
         }
 
         getDownload().stopThisSlot(this);
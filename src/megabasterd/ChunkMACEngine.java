@@ -0,0 +1,109 @@
+package megabasterd;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import static megabasterd.MiscTools.bin2i32a;
+import static megabasterd.MiscTools.i32a2bin;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class ChunkMACEngine {
+
+    public static final int BLOCK_SIZE = 16;
+
+    private final Cipher _cbc;
+    private final Cipher _ecb;
+    private final SecretKeySpec _key;
+    private final IvParameterSpec _chunk_iv;
+    private final ByteBuffer _cbc_out;
+    private final byte[] _block;
+    private final byte[] _file_mac;
+
+    public ChunkMACEngine(byte[] key, int[] iv) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+        _key = new SecretKeySpec(key, "AES");
+        _chunk_iv = new IvParameterSpec(i32a2bin(new int[]{iv[0], iv[1], iv[0], iv[1]}));
+        _cbc = Cipher.getInstance("AES/CBC/NoPadding");
+        _ecb = Cipher.getInstance("AES/ECB/NoPadding");
+        _ecb.init(Cipher.ENCRYPT_MODE, _key);
+        _cbc_out = ByteBuffer.allocateDirect(ChunkBufferPool.SIZE_CLASS);
+        _block = new byte[BLOCK_SIZE];
+        _file_mac = new byte[BLOCK_SIZE];
+    }
+
+    public int[] chunkMAC(ByteBuffer data) throws InvalidKeyException, InvalidAlgorithmParameterException, ShortBufferException {
+
+        _cbc.init(Cipher.ENCRYPT_MODE, _key, _chunk_iv);
+
+        byte[] mac = _chunk_iv.getIV();
+
+        int full_blocks_limit = data.position() + (data.remaining() / BLOCK_SIZE) * BLOCK_SIZE, limit = data.limit();
+
+        while (data.position() < full_blocks_limit) {
+
+            data.limit(Math.min(full_blocks_limit, data.position() + _cbc_out.capacity()));
+
+            _cbc_out.clear();
+
+            _cbc.update(data, _cbc_out);
+
+            _cbc_out.position(_cbc_out.position() - BLOCK_SIZE);
+
+            _cbc_out.get(mac);
+        }
+
+        data.limit(limit);
+
+        if (data.hasRemaining()) {
+
+            int tail = data.remaining();
+
+            data.get(_block, 0, tail);
+
+            for (int i = tail; i < BLOCK_SIZE; i++) {
+                _block[i] = 0;
+            }
+
+            _cbc.update(_block, 0, BLOCK_SIZE, mac, 0);
+        }
+
+        return bin2i32a(mac);
+    }
+
+    public void fold(int[] chunk_mac) throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+
+        byte[] byte_chunk_mac = i32a2bin(chunk_mac);
+
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            _file_mac[i] ^= byte_chunk_mac[i];
+        }
+
+        _ecb.doFinal(_file_mac, 0, BLOCK_SIZE, _file_mac, 0);
+    }
+
+    public int[] getFile_mac() {
+        return bin2i32a(_file_mac);
+    }
+
+    public void setFile_mac(int[] file_mac) {
+
+        System.arraycopy(i32a2bin(file_mac), 0, _file_mac, 0, BLOCK_SIZE);
+    }
+
+    public int[] getMeta_mac() {
+
+        int[] file_mac = getFile_mac();
+
+        return new int[]{file_mac[0] ^ file_mac[1], file_mac[2] ^ file_mac[3]};
+    }
+}
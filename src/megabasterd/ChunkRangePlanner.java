@@ -0,0 +1,80 @@
+package megabasterd;
+
+import static megabasterd.DBTools.selectIntSettingValueFromDB;
+import static megabasterd.DBTools.selectSettingValueFromDB;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class ChunkRangePlanner {
+
+    public static final long MIN_RANGE_SIZE = 1024 * 1024;
+    public static final int MAX_RANGE_SIZE_MB_DEFAULT = 16;
+    public static final int MAX_RANGE_SIZE_MB_LIMIT = 64;
+    public static final int TTFB_FACTOR = 8;
+    public static final double EWMA_ALPHA = 0.3d;
+    public static final long MIN_SAMPLE_BYTES = 256 * 1024;
+    public static final boolean ADAPTIVE_CHUNK_SIZE_DEFAULT = true;
+
+    private final boolean _adaptive;
+    private final long _max_range_size;
+    private double _throughput;
+    private double _ttfb;
+    private long _range_size;
+
+    public ChunkRangePlanner() {
+
+        String adaptive = selectSettingValueFromDB("adaptive_chunk_size");
+
+        _adaptive = adaptive != null ? adaptive.equals("yes") : ADAPTIVE_CHUNK_SIZE_DEFAULT;
+
+        _max_range_size = Math.max(1, Math.min(MAX_RANGE_SIZE_MB_LIMIT, selectIntSettingValueFromDB("max_chunk_range_size", MAX_RANGE_SIZE_MB_DEFAULT))) * 1024L * 1024L;
+
+        _throughput = 0d;
+
+        _ttfb = 0d;
+
+        _range_size = MIN_RANGE_SIZE;
+    }
+
+    public boolean isAdaptive() {
+        return _adaptive;
+    }
+
+    public long getRange_size() {
+
+        //adaptive_chunk_size=no keeps (roughly) the old one chunk per request
+        return _adaptive ? _range_size : MIN_RANGE_SIZE;
+    }
+
+    public double getThroughput() {
+        return _throughput;
+    }
+
+    public double getTtfb() {
+        return _ttfb;
+    }
+
+    public void sample(long bytes, long ttfb_nanos, long transfer_nanos) {
+
+        if (bytes < MIN_SAMPLE_BYTES || transfer_nanos <= 0) {
+            return;
+        }
+
+        double throughput = bytes / (transfer_nanos / 1e9d), ttfb = ttfb_nanos / 1e9d;
+
+        _throughput = _throughput > 0 ? EWMA_ALPHA * throughput + (1 - EWMA_ALPHA) * _throughput : throughput;
+
+        _ttfb = _ttfb > 0 ? EWMA_ALPHA * ttfb + (1 - EWMA_ALPHA) * _ttfb : ttfb;
+
+        long target = (long) (_throughput * _ttfb * TTFB_FACTOR);
+
+        _range_size = Math.max(MIN_RANGE_SIZE, Math.min(_max_range_size, Math.min(target, _range_size * 2)));
+    }
+
+    public void error() {
+
+        _range_size = Math.max(MIN_RANGE_SIZE, _range_size / 2);
+    }
+}
@@ -8,6 +8,7 @@ import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.net.URISyntaxException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -16,14 +17,18 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
-import javax.crypto.CipherInputStream;
+import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
-import static megabasterd.MainPanel.THREAD_POOL;
+import javax.crypto.ShortBufferException;
+import static megabasterd.MiscTools.bin2i32a;
 import static megabasterd.MiscTools.getWaitTimeExpBackOff;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -41,45 +46,63 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
     private final int _id;
     private final Upload _upload;
     private volatile boolean _exit;
-    private final Object _secure_notify_lock;
+    private final ReentrantLock _secure_notify_lock;
+    private final Condition _secure_notify_condition;
     private volatile boolean _error_wait;
+    private volatile boolean _stalled;
     private boolean _notified;
 
     public ChunkUploader(int id, Upload upload) {
         _notified = false;
-        _secure_notify_lock = new Object();
+        _secure_notify_lock = new ReentrantLock();
+        _secure_notify_condition = _secure_notify_lock.newCondition();
         _id = id;
         _upload = upload;
         _exit = false;
         _error_wait = false;
+        _stalled = false;
     }
 
     public void setExit(boolean exit) {
         _exit = exit;
     }
 
+    public boolean isStalled() {
+        return _stalled;
+    }
+
     public boolean isError_wait() {
         return _error_wait;
     }
 
     @Override
     public void secureNotify() {
-        synchronized (_secure_notify_lock) {
+
+        _secure_notify_lock.lock();
+
+        try {
 
             _notified = true;
 
-            _secure_notify_lock.notify();
+            _secure_notify_condition.signal();
+
+        } finally {
+
+            _secure_notify_lock.unlock();
         }
     }
 
     @Override
     public void secureWait() {
 
-        synchronized (_secure_notify_lock) {
+        _secure_notify_lock.lock();
+
+        try {
+
             while (!_notified) {
 
                 try {
-                    _secure_notify_lock.wait();
+                    _secure_notify_condition.await();
                 } catch (InterruptedException ex) {
                     _exit = true;
                     getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
@@ -87,6 +110,10 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
             }
 
             _notified = false;
+
+        } finally {
+
+            _secure_notify_lock.unlock();
         }
     }
 
@@ -114,11 +141,15 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
         Chunk chunk;
         int reads, to_read, conta_error, re, http_status, tot_bytes_up;
         byte[] buffer = new byte[MainPanel.THROTTLE_SLICE_SIZE];
-        boolean error;
+        boolean error, chunk_queued;
         OutputStream out;
 
         try (final CloseableHttpClient httpclient = MiscTools.getApacheKissHttpClient(); RandomAccessFile random_file = new RandomAccessFile(_upload.getFile_name(), "r");) {
 
+            ChunkCrypter crypter = new ChunkCrypter(Cipher.ENCRYPT_MODE, _upload.getByte_file_key(), _upload.getByte_file_iv());
+
+            ChunkMACEngine mac_engine = new ChunkMACEngine(_upload.getByte_file_key(), bin2i32a(_upload.getByte_file_iv()));
+
             conta_error = 0;
 
             while (!_exit && !_upload.isStopped()) {
@@ -139,10 +170,14 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
 
                 final long postdata_length = chunk.getSize();
 
+                TransferWatchdog.Watch watch = TransferWatchdog.getInstance().watch(_upload, httppost);
+
                 tot_bytes_up = 0;
 
                 error = false;
 
+                chunk_queued = false;
+
                 CloseableHttpResponse httpresponse = null;
 
                 try {
@@ -151,42 +186,60 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
 
                         FutureTask<CloseableHttpResponse> futureTask;
 
-                        try (CipherInputStream cis = new CipherInputStream(chunk.getInputStream(), CryptTools.genCrypter("AES", "AES/CTR/NoPadding", _upload.getByte_file_key(), CryptTools.forwardMEGALinkKeyIV(_upload.getByte_file_iv(), chunk.getOffset())))) {
+                        //Encrypted slice by slice into buffer as it goes out, so the plain chunk is left intact for the MAC
+                        ByteBuffer chunk_data = chunk.getData();
 
-                            final PipedInputStream pipein = new PipedInputStream();
-                            final PipedOutputStream pipeout = new PipedOutputStream(pipein);
-                            futureTask = new FutureTask<>(new Callable() {
-                                @Override
-                                public CloseableHttpResponse call() throws IOException {
+                        crypter.reset(chunk.getOffset());
 
-                                    httppost.setEntity(new InputStreamEntity(pipein, postdata_length));
+                        final PipedInputStream pipein = new PipedInputStream();
+                        final PipedOutputStream pipeout = new PipedOutputStream(pipein);
+                        watch.setCloseable(pipein);
+                        futureTask = new FutureTask<>(new Callable() {
+                            @Override
+                            public CloseableHttpResponse call() throws IOException {
 
-                                    return httpclient.execute(httppost);
-                                }
-                            });
-                            THREAD_POOL.execute(futureTask);
-                            out = new ThrottledOutputStream(pipeout, _upload.getMain_panel().getStream_supervisor());
-                            System.out.println(" Subiendo chunk " + chunk.getId() + " desde worker " + _id + "...");
-                            while (!_exit && !_upload.isStopped() && tot_bytes_up < chunk.getSize() && (reads = cis.read(buffer)) != -1) {
-                                out.write(buffer, 0, reads);
+                                httppost.setEntity(new InputStreamEntity(pipein, postdata_length));
 
-                                _upload.getPartialProgress().add(reads);
+                                return httpclient.execute(httppost);
+                            }
+                        });
+                        try {
 
-                                _upload.getProgress_meter().secureNotify();
+                            TransferRuntime.getInstance().getWorker_executor().execute(futureTask);
 
-                                tot_bytes_up += reads;
+                        } catch (RejectedExecutionException ex) {
 
-                                if (_upload.isPaused() && !_upload.isStopped()) {
+                            //Nobody would ever read the pipe
+                            pipeout.close();
 
-                                    _upload.pause_worker();
+                            throw new IOException("No free thread to send chunk " + chunk.getId(), ex);
+                        }
 
-                                    secureWait();
-                                }
+                        out = new ThrottledOutputStream(pipeout, _upload.getBandwidth_node(), _upload.getMain_panel().getStream_supervisor().getSlice_size());
+                        System.out.println(" Subiendo chunk " + chunk.getId() + " desde worker " + _id + "...");
+                        while (!_exit && !_upload.isStopped() && tot_bytes_up < chunk.getSize() && (reads = Math.min(buffer.length, chunk_data.remaining())) > 0) {
+                            crypter.update(chunk_data, buffer, reads);
+
+                            out.write(buffer, 0, reads);
+
+                            watch.addBytes(reads);
+
+                            _upload.getPartialProgress().add(reads);
+
+                            tot_bytes_up += reads;
+
+                            if (_upload.isPaused() && !_upload.isStopped()) {
+
+                                _upload.pause_worker();
+
+                                secureWait();
                             }
                         }
 
                         out.close();
 
+                        watch.close();
+
                         if (!_upload.isStopped()) {
 
                             try {
@@ -224,8 +277,6 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
                                         if (tot_bytes_up > 0) {
 
                                             _upload.getPartialProgress().add(-1 * tot_bytes_up);
-
-                                            _upload.getProgress_meter().secureNotify();
                                         }
 
                                         error = true;
@@ -288,8 +339,14 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
 
                                     System.out.println(" Worker " + _id + " ha subido chunk " + chunk.getId());
 
+                                    chunk.setMac(mac_engine.chunkMAC(chunk.getData()));
+
+                                    chunk.release();
+
                                     _upload.getMac_generator().getChunk_queue().put(chunk.getId(), chunk);
 
+                                    chunk_queued = true;
+
                                     _upload.getMac_generator().secureNotify();
 
                                     conta_error = 0;
@@ -302,8 +359,6 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
                                 if (tot_bytes_up > 0) {
 
                                     _upload.getPartialProgress().add(-1 * tot_bytes_up);
-
-                                    _upload.getProgress_meter().secureNotify();
                                 }
 
                             } finally {
@@ -326,13 +381,11 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
                     if (tot_bytes_up > 0) {
 
                         _upload.getPartialProgress().add(-1 * tot_bytes_up);
-
-                        _upload.getProgress_meter().secureNotify();
                     }
 
                     getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
 
-                } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException ex) {
+                } catch (InvalidKeyException | InvalidAlgorithmParameterException | ShortBufferException ex) {
                     getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
 
                 } finally {
@@ -341,6 +394,18 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
                         httpresponse.close();
                     }
 
+                    if (!chunk_queued) {
+                        chunk.release();
+                    }
+
+                    watch.close();
+
+                    if (_stalled != watch.isStalled()) {
+
+                        _stalled = watch.isStalled();
+
+                        _upload.getView().updateSlotsStatus();
+                    }
                 }
 
             }
@@ -354,6 +419,9 @@ public class ChunkUploader implements Runnable, SecureSingleThreadNotifiable {
             getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
         } catch (URISyntaxException ex) {
             Logger.getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException ex) {
+            _upload.emergencyStopUploader(ex.getMessage());
+            getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
         }
 
         _upload.stopThisSlot(this);
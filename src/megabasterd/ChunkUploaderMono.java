@@ -13,6 +13,7 @@ import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.net.URISyntaxException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -21,15 +22,17 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
-import javax.crypto.CipherInputStream;
+import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import static megabasterd.ChunkUploader.FUTURE_TIMEOUT;
-import static megabasterd.MainPanel.THREAD_POOL;
+import static megabasterd.MiscTools.bin2i32a;
 import static megabasterd.MiscTools.getWaitTimeExpBackOff;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -59,6 +62,10 @@ public class ChunkUploaderMono extends ChunkUploader {
 
         try (CloseableHttpClient httpclient = MiscTools.getApacheKissHttpClient(); RandomAccessFile random_file = new RandomAccessFile(getUpload().getFile_name(), "r");) {
 
+            ChunkCrypter crypter = new ChunkCrypter(Cipher.ENCRYPT_MODE, getUpload().getByte_file_key(), getUpload().getByte_file_iv());
+
+            ChunkMACEngine mac_engine = new ChunkMACEngine(getUpload().getByte_file_key(), bin2i32a(getUpload().getByte_file_iv()));
+
             conta_error = 0;
 
             OutputStream out = null;
@@ -70,62 +77,79 @@ public class ChunkUploaderMono extends ChunkUploader {
 
                 chunk = new Chunk(getUpload().nextChunkId(), getUpload().getFile_size(), null);
 
-                random_file.seek(chunk.getOffset());
+                boolean chunk_queued = false;
+
+                try {
+
+                    random_file.seek(chunk.getOffset());
 
-                do {
-                    to_read = chunk.getSize() - chunk.getOutputStream().size() >= buffer.length ? buffer.length : (int) (chunk.getSize() - chunk.getOutputStream().size());
+                    do {
+                        to_read = chunk.getSize() - chunk.getOutputStream().size() >= buffer.length ? buffer.length : (int) (chunk.getSize() - chunk.getOutputStream().size());
 
-                    re = random_file.read(buffer, 0, to_read);
+                        re = random_file.read(buffer, 0, to_read);
 
-                    chunk.getOutputStream().write(buffer, 0, re);
+                        chunk.getOutputStream().write(buffer, 0, re);
 
-                } while (!isExit() && !getUpload().isStopped() && chunk.getOutputStream().size() < chunk.getSize());
+                    } while (!isExit() && !getUpload().isStopped() && chunk.getOutputStream().size() < chunk.getSize());
 
-                if (tot_bytes_up == -1 || error) {
+                    if (tot_bytes_up == -1 || error) {
 
-                    final HttpPost httppost = new HttpPost(new URI(worker_url + "/" + chunk.getOffset()));
+                        final HttpPost httppost = new HttpPost(new URI(worker_url + "/" + chunk.getOffset()));
 
-                    final long postdata_length = getUpload().getFile_size() - chunk.getOffset();
+                        final long postdata_length = getUpload().getFile_size() - chunk.getOffset();
 
-                    final PipedInputStream pipein = new PipedInputStream();
+                        final PipedInputStream pipein = new PipedInputStream();
 
-                    final PipedOutputStream pipeout = new PipedOutputStream(pipein);
+                        final PipedOutputStream pipeout = new PipedOutputStream(pipein);
+
+                        futureTask = new FutureTask<>(new Callable() {
+                            @Override
+                            public CloseableHttpResponse call() throws IOException {
+
+                                httppost.setEntity(new InputStreamEntity(pipein, postdata_length));
+
+                                return httpclient.execute(httppost);
+                            }
+                        });
 
-                    futureTask = new FutureTask<>(new Callable() {
-                        @Override
-                        public CloseableHttpResponse call() throws IOException {
+                        try {
 
-                            httppost.setEntity(new InputStreamEntity(pipein, postdata_length));
+                            TransferRuntime.getInstance().getWorker_executor().execute(futureTask);
 
-                            return httpclient.execute(httppost);
+                        } catch (RejectedExecutionException ex) {
+
+                            //Nobody would ever read the pipe
+                            pipeout.close();
+
+                            throw new IOException("No free thread to send the file", ex);
                         }
-                    });
 
-                    THREAD_POOL.execute(futureTask);
+                        out = new ThrottledOutputStream(pipeout, getUpload().getBandwidth_node(), getUpload().getMain_panel().getStream_supervisor().getSlice_size());
 
-                    out = new ThrottledOutputStream(pipeout, getUpload().getMain_panel().getStream_supervisor());
+                    }
 
-                }
+                    tot_bytes_up = 0;
 
-                tot_bytes_up = 0;
+                    error = false;
 
-                error = false;
+                    try {
 
-                try {
+                        if (!isExit() && !getUpload().isStopped()) {
 
-                    if (!isExit() && !getUpload().isStopped()) {
+                            //Encrypted slice by slice into buffer as it goes out, so the plain chunk is left intact for the MAC
+                            ByteBuffer chunk_data = chunk.getData();
 
-                        try (CipherInputStream cis = new CipherInputStream(chunk.getInputStream(), CryptTools.genCrypter("AES", "AES/CTR/NoPadding", getUpload().getByte_file_key(), CryptTools.forwardMEGALinkKeyIV(getUpload().getByte_file_iv(), chunk.getOffset())))) {
+                            crypter.reset(chunk.getOffset());
 
                             System.out.println(" Subiendo chunk " + chunk.getId() + " desde worker " + getId() + "...");
 
-                            while (!isExit() && !getUpload().isStopped() && tot_bytes_up < chunk.getSize() && (reads = cis.read(buffer)) != -1 && out != null) {
+                            while (!isExit() && !getUpload().isStopped() && tot_bytes_up < chunk.getSize() && (reads = Math.min(buffer.length, chunk_data.remaining())) > 0 && out != null) {
+                                crypter.update(chunk_data, buffer, reads);
+
                                 out.write(buffer, 0, reads);
 
                                 getUpload().getPartialProgress().add(reads);
 
-                                getUpload().getProgress_meter().secureNotify();
-
                                 tot_bytes_up += reads;
 
                                 if (getUpload().isPaused() && !getUpload().isStopped()) {
@@ -135,162 +159,180 @@ public class ChunkUploaderMono extends ChunkUploader {
                                     secureWait();
                                 }
                             }
-                        }
 
-                        if (!getUpload().isStopped()) {
+                            if (!getUpload().isStopped()) {
 
-                            if (tot_bytes_up < chunk.getSize()) {
-                                if (tot_bytes_up > 0) {
+                                if (tot_bytes_up < chunk.getSize()) {
+                                    if (tot_bytes_up > 0) {
 
-                                    getUpload().getPartialProgress().add(-1 * tot_bytes_up);
+                                        getUpload().getPartialProgress().add(-1 * tot_bytes_up);
+                                    }
 
-                                    getUpload().getProgress_meter().secureNotify();
+                                    error = true;
                                 }
 
-                                error = true;
-                            }
+                                if (error && !getUpload().isStopped()) {
+
+                                    getUpload().rejectChunkId(chunk.getId());
 
-                            if (error && !getUpload().isStopped()) {
+                                    conta_error++;
 
-                                getUpload().rejectChunkId(chunk.getId());
+                                    if (!isExit()) {
 
-                                conta_error++;
+                                        setError_wait(true);
 
-                                if (!isExit()) {
+                                        Thread.sleep(getWaitTimeExpBackOff(conta_error) * 1000);
 
-                                    setError_wait(true);
+                                        setError_wait(false);
+                                    }
 
-                                    Thread.sleep(getWaitTimeExpBackOff(conta_error) * 1000);
+                                } else if (!error) {
 
-                                    setError_wait(false);
-                                }
+                                    System.out.println(" Worker " + getId() + " ha subido chunk " + chunk.getId());
 
-                            } else if (!error) {
+                                    System.out.println(chunk.getOffset() + " " + tot_bytes_up + " " + getUpload().getFile_size());
 
-                                System.out.println(" Worker " + getId() + " ha subido chunk " + chunk.getId());
+                                    if (chunk.getOffset() + tot_bytes_up < getUpload().getFile_size()) {
 
-                                System.out.println(chunk.getOffset() + " " + tot_bytes_up + " " + getUpload().getFile_size());
+                                        chunk.setMac(mac_engine.chunkMAC(chunk.getData()));
 
-                                if (chunk.getOffset() + tot_bytes_up < getUpload().getFile_size()) {
+                                        chunk.release();
+
+                                        getUpload().getMac_generator().getChunk_queue().put(chunk.getId(), chunk);
 
-                                    getUpload().getMac_generator().getChunk_queue().put(chunk.getId(), chunk);
+                                        chunk_queued = true;
 
-                                    getUpload().getMac_generator().secureNotify();
+                                        getUpload().getMac_generator().secureNotify();
 
-                                    conta_error = 0;
+                                        conta_error = 0;
+                                    }
                                 }
+
                             }
 
+                        } else if (isExit()) {
+
+                            getUpload().rejectChunkId(chunk.getId());
                         }
 
-                    } else if (isExit()) {
+                    } catch (IOException ex) {
+                        error = true;
 
                         getUpload().rejectChunkId(chunk.getId());
-                    }
 
-                } catch (IOException ex) {
-                    error = true;
+                        if (tot_bytes_up > 0) {
 
-                    getUpload().rejectChunkId(chunk.getId());
+                            getUpload().getPartialProgress().add(-1 * tot_bytes_up);
+                        }
 
-                    if (tot_bytes_up > 0) {
+                        getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
 
-                        getUpload().getPartialProgress().add(-1 * tot_bytes_up);
+                    } catch (InvalidKeyException | InvalidAlgorithmParameterException | ShortBufferException | InterruptedException ex) {
+                        getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
 
-                        getUpload().getProgress_meter().secureNotify();
                     }
 
-                    getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
+                    if (!error && chunk.getOffset() + tot_bytes_up == getUpload().getFile_size() && futureTask != null) {
 
-                } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException | InterruptedException ex) {
-                    getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
+                        try {
 
-                }
+                            httpresponse = futureTask.get(FUTURE_TIMEOUT, TimeUnit.SECONDS);
 
-                if (!error && chunk.getOffset() + tot_bytes_up == getUpload().getFile_size() && futureTask != null) {
+                            http_status = httpresponse.getStatusLine().getStatusCode();
 
-                    try {
+                            if (http_status != HttpStatus.SC_OK) {
+                                throw new IOException("UPLOAD FAILED! (HTTP STATUS: " + http_status + ")");
 
-                        httpresponse = futureTask.get(FUTURE_TIMEOUT, TimeUnit.SECONDS);
+                            } else {
 
-                        http_status = httpresponse.getStatusLine().getStatusCode();
+                                InputStream is = httpresponse.getEntity().getContent();
 
-                        if (http_status != HttpStatus.SC_OK) {
-                            throw new IOException("UPLOAD FAILED! (HTTP STATUS: " + http_status + ")");
+                                try (ByteArrayOutputStream byte_res = new ByteArrayOutputStream()) {
 
-                        } else {
+                                    while ((reads = is.read(buffer)) != -1) {
 
-                            InputStream is = httpresponse.getEntity().getContent();
+                                        byte_res.write(buffer, 0, reads);
+                                    }
 
-                            try (ByteArrayOutputStream byte_res = new ByteArrayOutputStream()) {
+                                    String response = new String(byte_res.toByteArray());
 
-                                while ((reads = is.read(buffer)) != -1) {
+                                    if (response.length() > 0) {
 
-                                    byte_res.write(buffer, 0, reads);
-                                }
+                                        if (MegaAPI.checkMEGAError(response) != 0) {
+                                            throw new IOException("UPLOAD FAILED! (MEGA ERROR: " + MegaAPI.checkMEGAError(response) + ")");
 
-                                String response = new String(byte_res.toByteArray());
+                                        } else {
 
-                                if (response.length() > 0) {
+                                            System.out.println("Completion handle -> " + response);
 
-                                    if (MegaAPI.checkMEGAError(response) != 0) {
-                                        throw new IOException("UPLOAD FAILED! (MEGA ERROR: " + MegaAPI.checkMEGAError(response) + ")");
+                                            getUpload().setCompletion_handle(response);
 
-                                    } else {
+                                            conta_error = 0;
 
-                                        System.out.println("Completion handle -> " + response);
+                                            chunk.setMac(mac_engine.chunkMAC(chunk.getData()));
 
-                                        getUpload().setCompletion_handle(response);
+                                            chunk.release();
 
-                                        conta_error = 0;
+                                            getUpload().getMac_generator().getChunk_queue().put(chunk.getId(), chunk);
 
-                                        getUpload().getMac_generator().getChunk_queue().put(chunk.getId(), chunk);
+                                            chunk_queued = true;
 
-                                        getUpload().getMac_generator().secureNotify();
-                                    }
-                                } else {
+                                            getUpload().getMac_generator().secureNotify();
+                                        }
+                                    } else {
 
-                                    throw new IOException("UPLOAD FAILED! (UPLOAD RESPONSE IS EMPTY)");
+                                        throw new IOException("UPLOAD FAILED! (UPLOAD RESPONSE IS EMPTY)");
+                                    }
                                 }
                             }
-                        }
 
-                    } catch (ExecutionException | InterruptedException | CancellationException | TimeoutException exception) {
+                        } catch (ExecutionException | InterruptedException | CancellationException | TimeoutException exception) {
 
-                        if (exception instanceof TimeoutException) {
-                            futureTask.cancel(true);
-                        }
+                            if (exception instanceof TimeoutException) {
+                                futureTask.cancel(true);
+                            }
 
-                        error = true;
+                            error = true;
 
-                        getUpload().rejectChunkId(chunk.getId());
+                            getUpload().rejectChunkId(chunk.getId());
 
-                        getUpload().getPartialProgress().add(-1 * tot_bytes_up);
+                            getUpload().getPartialProgress().add(-1 * tot_bytes_up);
 
-                        getUpload().getProgress_meter().secureNotify();
+                        } catch (InvalidKeyException | InvalidAlgorithmParameterException | ShortBufferException ex) {
 
-                    } finally {
+                            getUpload().emergencyStopUploader(ex.getMessage());
 
-                        if (out != null) {
+                            getLogger(ChunkUploader.class.getName()).log(Level.SEVERE, null, ex);
 
-                            out.close();
-                        }
+                        } finally {
+
+                            if (out != null) {
 
-                        if (httpresponse != null) {
+                                out.close();
+                            }
+
+                            if (httpresponse != null) {
 
-                            httpresponse.close();
+                                httpresponse.close();
+                            }
                         }
-                    }
 
-                } else if (error) {
+                    } else if (error) {
 
-                    if (out != null) {
+                        if (out != null) {
+
+                            out.close();
+                        }
 
-                        out.close();
+                        if (futureTask != null) {
+                            futureTask.cancel(true);
+                        }
                     }
 
-                    if (futureTask != null) {
-                        futureTask.cancel(true);
+                } finally {
+
+                    if (!chunk_queued) {
+                        chunk.release();
                     }
                 }
             }
@@ -305,6 +347,9 @@ public class ChunkUploaderMono extends ChunkUploader {
 
         } catch (URISyntaxException ex) {
             Logger.getLogger(ChunkUploaderMono.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException ex) {
+            getUpload().emergencyStopUploader(ex.getMessage());
+            getLogger(ChunkUploaderMono.class.getName()).log(Level.SEVERE, null, ex);
         }
 
         getUpload().stopThisSlot(this);
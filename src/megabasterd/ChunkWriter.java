@@ -1,14 +1,29 @@
 package megabasterd;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import static java.util.Arrays.copyOfRange;
+import java.util.BitSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import static java.util.logging.Logger.getLogger;
-import javax.crypto.CipherInputStream;
+import static megabasterd.MiscTools.bin2i32a;
+import static megabasterd.MiscTools.i32a2bin;
 
 public final class ChunkWriter implements Runnable, SecureSingleThreadNotifiable {
 
-    private long _last_chunk_id_written;
+    public static final int BITMAP_SAVE_INTERVAL = 5;
+    public static final long BITMAP_SAVE_BYTES = 64 * 1024 * 1024;
+
     private long _bytes_written;
     private final long _file_size;
     private final ConcurrentHashMap<Long, Chunk> _chunk_queue;
@@ -19,10 +34,19 @@ public final class ChunkWriter implements Runnable, SecureSingleThreadNotifiable
     private final ConcurrentLinkedQueue<Long> _rejectedChunkIds;
     private final Object _secure_notify_lock;
     private boolean _notified;
+    private final BitSet _written_chunks;
+    private final File _bitmap_file;
+    private final File _macs_file;
+    private final int[][] _chunk_macs;
+    private FileChannel _macs_channel;
+    private long _unsaved_bytes;
+    private long _last_bitmap_save;
 
     public ChunkWriter(Download downloader) throws Exception {
         _notified = false;
         _exit = false;
+        _unsaved_bytes = 0;
+        _last_bitmap_save = System.currentTimeMillis();
         _download = downloader;
         _secure_notify_lock = new Object();
         _file_size = _download.getFile_size();
@@ -30,20 +54,45 @@ public final class ChunkWriter implements Runnable, SecureSingleThreadNotifiable
         _byte_iv = CryptTools.initMEGALinkKeyIV(_download.getFile_key());
         _chunk_queue = new ConcurrentHashMap();
         _rejectedChunkIds = new ConcurrentLinkedQueue<>();
+        _bitmap_file = _download.getChunk_bitmap_file();
+        _written_chunks = new BitSet();
+        _macs_file = _download.getChunk_macs_file();
+        _chunk_macs = new int[(int) Chunk.calculateLastChunkId(_file_size)][];
+
+        if (_download.getFile().exists() && _download.getFile().length() > 0) {
+
+            if (_bitmap_file.exists()) {
+
+                loadChunkBitmap();
 
-        if (_download.getProgress() == 0) {
-            _download.setLast_chunk_id_dispatched(0);
+                if (_macs_file.exists()) {
 
-            _last_chunk_id_written = 0;
+                    loadChunkMACs();
+                }
+
+            } else if (_download.getFile().length() < _file_size) {
+
+                //Temp file written by the old in-order writer (never preallocated): every chunk up to the last complete one is OK
+                long last_chunk_id = calculateLastWrittenChunk(_download.calculateMaxTempFileSize(_download.getFile().length()));
+
+                if (last_chunk_id > 0) {
+                    _written_chunks.set(1, (int) last_chunk_id + 1);
+                }
+            }
 
-            _bytes_written = 0;
         } else {
-            _last_chunk_id_written = calculateLastWrittenChunk(_download.getProgress());
 
-            _download.setLast_chunk_id_dispatched(_last_chunk_id_written);
+            deleteChunkStateFiles();
+        }
+
+        _bytes_written = 0;
 
-            _bytes_written = _download.getProgress();
+        for (int i = _written_chunks.nextSetBit(1); i >= 0; i = _written_chunks.nextSetBit(i + 1)) {
+
+            _bytes_written += Chunk.calculateChunkSize(i, _file_size);
         }
+
+        _download.setLast_chunk_id_dispatched(0);
     }
 
     @Override
@@ -78,6 +127,10 @@ public final class ChunkWriter implements Runnable, SecureSingleThreadNotifiable
         return _byte_file_key;
     }
 
+    public byte[] getByte_iv() {
+        return _byte_iv;
+    }
+
     public ConcurrentLinkedQueue getRejectedChunkIds() {
         return _rejectedChunkIds;
     }
@@ -90,53 +143,88 @@ public final class ChunkWriter implements Runnable, SecureSingleThreadNotifiable
         return _bytes_written;
     }
 
-    public long getLast_chunk_id_written() {
-        return _last_chunk_id_written;
+    public ConcurrentHashMap<Long, Chunk> getChunk_queue() {
+        return _chunk_queue;
     }
 
-    public ConcurrentHashMap getChunk_queue() {
-        return _chunk_queue;
+    public int[][] getChunk_macs() {
+        return _chunk_macs;
+    }
+
+    public boolean isChunkWritten(long chunk_id) {
+
+        synchronized (_written_chunks) {
+
+            return chunk_id <= Integer.MAX_VALUE && _written_chunks.get((int) chunk_id);
+        }
+    }
+
+    public void deleteChunkStateFiles() {
+
+        if (_bitmap_file.exists()) {
+            _bitmap_file.delete();
+        }
+
+        if (_macs_file.exists()) {
+            _macs_file.delete();
+        }
+
+        File tmp_file = new File(_bitmap_file.getPath() + ".tmp");
+
+        if (tmp_file.exists()) {
+            tmp_file.delete();
+        }
     }
 
     @Override
     public void run() {
-        Chunk current_chunk;
-        CipherInputStream cis;
-        byte[] buffer = new byte[16 * 1024];
-        int reads;
+        try (RandomAccessFile macs_file = new RandomAccessFile(_macs_file, "rw")) {
 
-        try {
+            _macs_channel = macs_file.getChannel();
 
             System.out.println("Filewriter: let's do some work!");
 
             if (_file_size > 0) {
                 while (!_exit && (!_download.isStopped() || !_download.getChunkworkers().isEmpty()) && _bytes_written < _file_size) {
-                    while (_chunk_queue.containsKey(_last_chunk_id_written + 1)) {
-                        current_chunk = _chunk_queue.get(_last_chunk_id_written + 1);
 
-                        cis = new CipherInputStream(current_chunk.getInputStream(), CryptTools.genDecrypter("AES", "AES/CTR/NoPadding", _byte_file_key, CryptTools.forwardMEGALinkKeyIV(_byte_iv, _bytes_written)));
+                    for (Long chunk_id : _chunk_queue.keySet()) {
 
-                        while ((reads = cis.read(buffer)) != -1) {
-                            _download.getOutput_stream().write(buffer, 0, reads);
-                        }
+                        Chunk current_chunk = _chunk_queue.remove(chunk_id);
+
+                        if (current_chunk != null) {
 
-                        cis.close();
+                            try {
 
-                        _bytes_written += current_chunk.getSize();
+                                if (!isChunkWritten(current_chunk.getId())) {
 
-                        _chunk_queue.remove(current_chunk.getId());
+                                    writeChunk(current_chunk);
+                                }
 
-                        _last_chunk_id_written = current_chunk.getId();
+                            } finally {
 
+                                current_chunk.release();
+                            }
+                        }
+                    }
+
+                    //Every save forces the whole file to disk: do it now and then, and always before the download goes idle
+                    if (_unsaved_bytes > 0 && (_unsaved_bytes >= BITMAP_SAVE_BYTES || System.currentTimeMillis() - _last_bitmap_save >= BITMAP_SAVE_INTERVAL * 1000L || _download.isPaused() || _download.isStopped() || _bytes_written == _file_size)) {
+
+                        saveChunkBitmap();
                     }
 
                     if (!_exit && (!_download.isStopped() || !_download.getChunkworkers().isEmpty()) && _bytes_written < _file_size) {
 
-                        System.out.println("Filewriter waiting for chunk [" + (_last_chunk_id_written + 1) + "]...");
+                        System.out.println("Filewriter waiting for chunks (" + _bytes_written + "/" + _file_size + ")...");
 
                         secureWait();
                     }
                 }
+
+                if (_unsaved_bytes > 0) {
+
+                    saveChunkBitmap();
+                }
             }
 
         } catch (Exception ex) {
@@ -148,11 +236,148 @@ public final class ChunkWriter implements Runnable, SecureSingleThreadNotifiable
 
         _exit = true;
 
+        for (Chunk chunk : _chunk_queue.values()) {
+            chunk.release();
+        }
+
+        _chunk_queue.clear();
+
         _download.secureNotify();
 
         System.out.println("Filewriter: bye bye" + _download.getFile().getName());
     }
 
+    private void writeChunk(Chunk chunk) throws IOException {
+        ByteBuffer data = chunk.getData();
+        long position = chunk.getOffset();
+        FileChannel out = _download.getOutput_channel();
+
+        while (data.hasRemaining()) {
+            position += out.write(data, position);
+        }
+
+        if (chunk.getMac() != null) {
+
+            writeChunkMAC(chunk.getId(), chunk.getMac());
+        }
+
+        synchronized (_written_chunks) {
+            _written_chunks.set((int) chunk.getId());
+        }
+
+        _bytes_written += chunk.getSize();
+
+        _unsaved_bytes += chunk.getSize();
+    }
+
+    private void writeChunkMAC(long chunk_id, int[] chunk_mac) throws IOException {
+
+        ByteBuffer data = ByteBuffer.wrap(i32a2bin(chunk_mac));
+
+        long position = (chunk_id - 1) * ChunkMACEngine.BLOCK_SIZE;
+
+        while (data.hasRemaining()) {
+            position += _macs_channel.write(data, position);
+        }
+
+        _chunk_macs[(int) chunk_id - 1] = chunk_mac;
+    }
+
+    private void loadChunkMACs() throws IOException {
+
+        byte[] data = new byte[(int) Math.min(_macs_file.length(), (long) _chunk_macs.length * ChunkMACEngine.BLOCK_SIZE)];
+
+        try (FileInputStream fis = new FileInputStream(_macs_file)) {
+
+            int pos = 0, reads;
+
+            while (pos < data.length && (reads = fis.read(data, pos, data.length - pos)) != -1) {
+                pos += reads;
+            }
+        }
+
+        for (int i = 0; i + ChunkMACEngine.BLOCK_SIZE <= data.length; i += ChunkMACEngine.BLOCK_SIZE) {
+
+            int[] chunk_mac = bin2i32a(copyOfRange(data, i, i + ChunkMACEngine.BLOCK_SIZE));
+
+            if (_written_chunks.get(i / ChunkMACEngine.BLOCK_SIZE + 1) && (chunk_mac[0] | chunk_mac[1] | chunk_mac[2] | chunk_mac[3]) != 0) {
+
+                _chunk_macs[i / ChunkMACEngine.BLOCK_SIZE] = chunk_mac;
+            }
+        }
+    }
+
+    private void loadChunkBitmap() throws IOException {
+
+        byte[] data = new byte[(int) _bitmap_file.length()];
+
+        try (FileInputStream fis = new FileInputStream(_bitmap_file)) {
+
+            int pos = 0, reads;
+
+            while (pos < data.length && (reads = fis.read(data, pos, data.length - pos)) != -1) {
+                pos += reads;
+            }
+        }
+
+        _written_chunks.or(BitSet.valueOf(data));
+    }
+
+    public void requeueChunks(Iterable<Long> chunk_ids) throws IOException {
+
+        synchronized (_written_chunks) {
+
+            for (Long chunk_id : chunk_ids) {
+
+                if (_written_chunks.get((int) (long) chunk_id)) {
+
+                    _written_chunks.clear((int) (long) chunk_id);
+
+                    _bytes_written -= Chunk.calculateChunkSize(chunk_id, _file_size);
+                }
+            }
+        }
+
+        saveChunkBitmap();
+
+        _exit = false;
+    }
+
+    public void saveChunkBitmap() throws IOException {
+
+        byte[] data;
+
+        synchronized (_written_chunks) {
+            data = _written_chunks.toByteArray();
+        }
+
+        //The bitmap must never claim chunks that are not on disk yet
+        if (_download.getOutput_channel() != null) {
+            _download.getOutput_channel().force(false);
+        }
+
+        if (_macs_channel != null && _macs_channel.isOpen()) {
+            _macs_channel.force(false);
+        }
+
+        File tmp_file = new File(_bitmap_file.getPath() + ".tmp");
+
+        try (FileOutputStream fos = new FileOutputStream(tmp_file)) {
+            fos.write(data);
+            fos.getFD().sync();
+        }
+
+        try {
+            Files.move(tmp_file.toPath(), _bitmap_file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp_file.toPath(), _bitmap_file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        _unsaved_bytes = 0;
+
+        _last_bitmap_save = System.currentTimeMillis();
+    }
+
     private long calculateLastWrittenChunk(long temp_file_size) {
         if (temp_file_size > 3584 * 1024) {
             return 7 + (long) Math.ceil((temp_file_size - 3584 * 1024) / (1024 * 1024));
@@ -0,0 +1,221 @@
+package megabasterd;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class ConnectionBudget implements Runnable {
+
+    public static final int SLEEP = SlotAutoTuner.SAMPLE_INTERVAL;
+    public static final int CONNECTIONS_DEFAULT = 32;
+    public static final int MIN_CONNECTIONS = Download.MIN_WORKERS;
+    public static final int MAX_CONNECTIONS = Download.MAX_SIM_TRANSFERENCES * Download.MAX_ASYNC_WORKERS;
+    public static final double EWMA_ALPHA = 0.5d;
+
+    private final MainPanel _main_panel;
+    private final ConcurrentHashMap<Download, Share> _shares;
+
+    ConnectionBudget(MainPanel main_panel) {
+        _main_panel = main_panel;
+        _shares = new ConcurrentHashMap<>();
+    }
+
+    public void register(Download download) {
+
+        _shares.putIfAbsent(download, new Share(download));
+
+        rebalance();
+    }
+
+    public void unregister(Download download) {
+
+        if (_shares.remove(download) != null) {
+
+            rebalance();
+        }
+    }
+
+    public void sample(Download download, int slots, double speed) {
+
+        Share share = _shares.get(download);
+
+        if (share != null) {
+
+            share.sample(slots, speed);
+        }
+    }
+
+    public int getQuota(Download download) {
+
+        Share share = _shares.get(download);
+
+        return share != null ? share._quota : download.getMax_workers();
+    }
+
+    @Override
+    public void run() {
+
+        rebalance();
+    }
+
+    private synchronized void rebalance() {
+
+        for (Download download : _shares.keySet()) {
+
+            if (download.isExit()) {
+
+                _shares.remove(download);
+            }
+        }
+
+        if (_shares.isEmpty()) {
+            return;
+        }
+
+        int left = _main_panel.getMax_connections_down();
+
+        /* Downloads with manual slots (or already finishing) are not ours to move, but their connections are spent. */
+        for (Transference transference : _main_panel.getDownload_manager().getTransference_running_list()) {
+
+            if (transference instanceof Download && !_shares.containsKey(transference)) {
+
+                Download download = (Download) transference;
+
+                left -= download.isUse_slots() ? download.countActiveSlots() : 1;
+            }
+        }
+
+        double optimistic = 0d;
+
+        for (Share share : _shares.values()) {
+
+            share.prepare();
+
+            optimistic = Math.max(optimistic, share._per_slot);
+
+            left -= share._next;
+        }
+
+        /* Hand out the rest one connection at a time to whoever is expected to gain the most from it. */
+        while (left > 0) {
+
+            Share best = null;
+
+            double best_gain = 0d, gain;
+
+            for (Share share : _shares.values()) {
+
+                if (share._next < share._useful && (gain = share.gain(share._next + 1, optimistic)) > best_gain) {
+
+                    best = share;
+
+                    best_gain = gain;
+                }
+            }
+
+            if (best == null) {
+                break;
+            }
+
+            best._next++;
+
+            left--;
+        }
+
+        /* Connections nobody gains from are only taken away when somebody else needs them. */
+        for (Share share : _shares.values()) {
+
+            int keep = Math.max(0, Math.min(left, Math.min(share._current, share._useful) - share._next));
+
+            share._next += keep;
+
+            left -= keep;
+        }
+
+        StringBuilder changes = new StringBuilder();
+
+        for (Share share : _shares.values()) {
+
+            if (share._quota != share._next) {
+
+                changes.append(" ").append(share._download.getFile_name()).append(": ").append(share._quota).append(" -> ").append(share._next);
+
+                share._quota = share._next;
+            }
+        }
+
+        if (changes.length() > 0) {
+
+            getLogger(ConnectionBudget.class.getName()).log(Level.FINE, "ConnectionBudget:{0}", changes);
+        }
+    }
+
+    private static final class Share {
+
+        private final Download _download;
+        private volatile int _quota;
+        private int _slots;
+        private double _speed;
+        private double _marginal;
+        private boolean _measured;
+        private double _per_slot;
+        private int _current;
+        private int _useful;
+        private int _next;
+
+        private Share(Download download) {
+            _download = download;
+            _quota = download.getMax_workers();
+            _slots = 0;
+            _speed = 0d;
+            _marginal = 0d;
+            _measured = false;
+        }
+
+        private synchronized void sample(int slots, double speed) {
+
+            if (_slots > 0 && _speed > 0 && slots != _slots) {
+
+                /* What the last slot change bought us (or cost us): that's the marginal throughput of a connection. */
+                double marginal = (speed - _speed) / (slots - _slots);
+
+                _marginal = _measured ? EWMA_ALPHA * marginal + (1 - EWMA_ALPHA) * _marginal : marginal;
+
+                _measured = true;
+            }
+
+            _slots = slots;
+
+            _speed = speed;
+        }
+
+        private synchronized void prepare() {
+
+            _current = _slots;
+
+            _per_slot = (_slots > 0 && _speed > 0) ? _speed / _slots : 0d;
+
+            long remaining = _download.getFile_size() - _download.getProgress();
+
+            /* A download that would be done before the next rebalance at its current pace doesn't need more connections. */
+            double horizon = Math.max(ChunkRangePlanner.MIN_RANGE_SIZE, _per_slot * SLEEP);
+
+            _useful = (int) Math.max(Download.MIN_WORKERS, Math.min(_download.getMax_workers(), Math.ceil(remaining / horizon)));
+
+            _next = Download.MIN_WORKERS;
+        }
+
+        private synchronized double gain(int n, double optimistic) {
+
+            double per_slot = _per_slot > 0 ? _per_slot : optimistic > 0 ? optimistic : 1d, slots = Math.max(1, _current);
+
+            double gain = n < slots ? per_slot : (_measured ? Math.max(0d, _marginal) : per_slot) * slots / n;
+
+            return gain * _download.getBandwidth_node().getWeight();
+        }
+    }
+}
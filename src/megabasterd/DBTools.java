@@ -202,6 +202,22 @@ public final class DBTools {
         return value;
     }
 
+    public static int selectIntSettingValueFromDB(String key, int default_value) {
+
+        String value = selectSettingValueFromDB(key);
+
+        try {
+
+            return (value != null && !value.isEmpty()) ? Integer.parseInt(value) : default_value;
+
+        } catch (NumberFormatException ex) {
+
+            getLogger(DBTools.class.getName()).log(Level.WARNING, null, ex);
+
+            return default_value;
+        }
+    }
+
     public static synchronized void insertSettingValueInDB(String key, String value) throws SQLException {
 
         Connection conn = SqliteSingleton.getInstance().getConn();
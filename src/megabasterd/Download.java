@@ -1,47 +1,38 @@
 package megabasterd;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
 import static java.lang.Integer.MAX_VALUE;
 import static java.lang.Integer.parseInt;
 import static java.lang.Long.valueOf;
 import static java.lang.Math.ceil;
 import static java.lang.Thread.sleep;
 import java.nio.channels.FileChannel;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import static java.util.concurrent.Executors.newCachedThreadPool;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import static java.util.logging.Level.SEVERE;
 import static java.util.logging.Logger.getLogger;
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-import static megabasterd.CryptTools.genCrypter;
 import static megabasterd.DBTools.deleteDownload;
 import static megabasterd.DBTools.insertDownload;
 import static megabasterd.DBTools.selectSettingValueFromDB;
 import static megabasterd.MainPanel.THREAD_POOL;
 import static megabasterd.MiscTools.UrlBASE642Bin;
 import static megabasterd.MiscTools.bin2i32a;
-import static megabasterd.MiscTools.checkMegaDownloadUrl;
 import static megabasterd.MiscTools.findFirstRegex;
 import static megabasterd.MiscTools.formatBytes;
 import static megabasterd.MiscTools.getWaitTimeExpBackOff;
-import static megabasterd.MiscTools.i32a2bin;
 import static megabasterd.MiscTools.swingReflectionInvoke;
 import static megabasterd.MiscTools.swingReflectionInvokeAndWait;
 import static megabasterd.MiscTools.swingReflectionInvokeAndWaitForReturn;
@@ -55,18 +46,22 @@ import static megabasterd.Transference.MAX_WAIT_WORKERS_SHUTDOWN;
 public final class Download implements Transference, Runnable, SecureSingleThreadNotifiable {
 
     public static final boolean VERIFY_CBC_MAC_DEFAULT = false;
-    public static final Object CBC_LOCK = new Object();
+    public static final boolean VERIFY_ON_DISK_DEFAULT = false;
     public static final boolean USE_SLOTS_DEFAULT = false;
+    public static final boolean AUTO_SLOTS_DEFAULT = false;
+    public static final boolean ASYNC_HTTP_DEFAULT = false;
     public static final int WORKERS_DEFAULT = 4;
+    public static final int MAX_ASYNC_WORKERS = 64;
+    public static final double MAX_REPAIR_RATIO = 0.25d;
+    public static final long MIN_REPAIR_ROUND_SIZE = 64 * 1024 * 1024;
+    public static final int REPAIR_ROUNDS = 8;
 
     private final MainPanel _main_panel;
     private volatile DownloadView _view = null; //lazy init
     private volatile SpeedMeter _speed_meter = null; //lazy init
-    private volatile ProgressMeter _progress_meter = null; //lazy init;
     private final Object _secure_notify_lock;
     private final Object _workers_lock;
     private final Object _chunkid_lock;
-    private final Object _dl_url_lock;
     private boolean _notified;
     private final String _url;
     private final String _download_path;
@@ -77,27 +72,36 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
     private String _file_noexpire;
     private final boolean _use_slots;
     private final int _slots;
+    private final boolean _async_http;
+    private volatile boolean _auto_slots;
+    private final AtomicInteger _slot_errors;
+    private final AtomicInteger _bandwidth_errors;
     private final boolean _restart;
     private final ArrayList<ChunkDownloader> _chunkworkers;
-    private final ExecutorService _thread_pool;
+    private final TransferRuntime.TaskGroup _thread_pool;
     private volatile boolean _exit;
     private volatile boolean _pause;
-    private final ConcurrentLinkedQueue<Integer> _partialProgressQueue;
+    private final LongAdder _partial_progress;
     private volatile long _progress;
     private ChunkWriter _chunkwriter;
-    private String _last_download_url;
     private boolean _provision_ok;
     private boolean _finishing_download;
     private int _paused_workers;
     private File _file;
     private boolean _checking_cbc;
     private boolean _retrying_request;
+    private final DownloadUrlLeaseManager.UrlFetcher _worker_url_fetcher;
     private Double _progress_bar_rate;
-    private OutputStream _output_stream;
+    private RandomAccessFile _output_file;
+    private FileChannel _output_channel;
+    private File _chunk_bitmap_file;
+    private File _chunk_macs_file;
     private String _fatal_error;
     private boolean _status_error;
-    private final ConcurrentLinkedQueue<Long> _rejectedChunkIds;
+    private final ConcurrentSkipListSet<Long> _rejectedChunkIds;
     private long _last_chunk_id_dispatched;
+    private final EndgameScheduler _endgame;
+    private final BandwidthNode _bandwidth_node;
 
     public Download(MainPanel main_panel, String url, String download_path, String file_name, String file_key, Long file_size, String file_pass, String file_noexpire, boolean use_slots, int slots, boolean restart) {
 
@@ -110,7 +114,6 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
         _finishing_download = false;
         _pause = false;
         _exit = false;
-        _last_download_url = null;
         _provision_ok = true;
         _progress = 0L;
         _notified = false;
@@ -124,15 +127,26 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
         _file_noexpire = file_noexpire;
         _use_slots = use_slots;
         _slots = slots;
+        _async_http = use_slots && main_panel.isAsync_http_down() && !MainPanel.isUse_proxy() && AsyncHttpEngine.getInstance().isAvailable();
         _restart = restart;
         _secure_notify_lock = new Object();
         _workers_lock = new Object();
         _chunkid_lock = new Object();
-        _dl_url_lock = new Object();
         _chunkworkers = new ArrayList<>();
-        _partialProgressQueue = new ConcurrentLinkedQueue<>();
-        _rejectedChunkIds = new ConcurrentLinkedQueue<>();
-        _thread_pool = newCachedThreadPool();
+        _partial_progress = new LongAdder();
+        _rejectedChunkIds = new ConcurrentSkipListSet<>();
+        _auto_slots = false;
+        _slot_errors = new AtomicInteger(0);
+        _bandwidth_errors = new AtomicInteger(0);
+        _endgame = new EndgameScheduler(file_size);
+        _bandwidth_node = main_panel.getStream_supervisor().newInputNode(0, 0, BandwidthNode.DEFAULT_WEIGHT);
+        _worker_url_fetcher = new DownloadUrlLeaseManager.UrlFetcher() {
+            @Override
+            public String fetchUrl() throws IOException {
+                return fetchDownloadUrlForWorker();
+            }
+        };
+        _thread_pool = TransferRuntime.getInstance().newTaskGroup();
     }
 
     public Object getWorkers_lock() {
@@ -167,10 +181,6 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
         return _chunkwriter;
     }
 
-    public ConcurrentLinkedQueue<Integer> getPartialProgressQueue() {
-        return _partialProgressQueue;
-    }
-
     public String getFile_key() {
         return _file_key;
     }
@@ -180,8 +190,16 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
         return _progress;
     }
 
-    public OutputStream getOutput_stream() {
-        return _output_stream;
+    public FileChannel getOutput_channel() {
+        return _output_channel;
+    }
+
+    public File getChunk_bitmap_file() {
+        return _chunk_bitmap_file;
+    }
+
+    public File getChunk_macs_file() {
+        return _chunk_macs_file;
     }
 
     public File getFile() {
@@ -225,50 +243,65 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
         return _slots;
     }
 
-    public void setLast_chunk_id_dispatched(long last_chunk_id_dispatched) {
-        _last_chunk_id_dispatched = last_chunk_id_dispatched;
+    public boolean isAuto_slots() {
+        return _auto_slots;
     }
 
-    public boolean isProvision_ok() {
-        return _provision_ok;
+    public boolean isAsync_http() {
+        return _async_http;
     }
 
-    @Override
-    public SpeedMeter getSpeed_meter() {
+    public int getMax_workers() {
+        return _async_http ? MAX_ASYNC_WORKERS : MAX_WORKERS;
+    }
 
-        SpeedMeter result = _speed_meter;
+    public TransferRuntime.TaskGroup getThread_pool() {
+        return _thread_pool;
+    }
 
-        if (result == null) {
+    public AtomicInteger getSlot_errors() {
+        return _slot_errors;
+    }
 
-            synchronized (this) {
+    public AtomicInteger getBandwidth_errors() {
+        return _bandwidth_errors;
+    }
 
-                result = _speed_meter;
+    public EndgameScheduler getEndgame() {
+        return _endgame;
+    }
 
-                if (result == null) {
+    public boolean isFinishing_download() {
+        return _finishing_download;
+    }
 
-                    _speed_meter = result = new SpeedMeter(this, getMain_panel().getGlobal_dl_speed());
+    public void setLast_chunk_id_dispatched(long last_chunk_id_dispatched) {
+        _last_chunk_id_dispatched = last_chunk_id_dispatched;
+    }
 
-                }
-            }
-        }
+    public boolean isProvision_ok() {
+        return _provision_ok;
+    }
 
-        return result;
+    @Override
+    public BandwidthNode getBandwidth_node() {
+        return _bandwidth_node;
     }
 
     @Override
-    public ProgressMeter getProgress_meter() {
+    public SpeedMeter getSpeed_meter() {
 
-        ProgressMeter result = _progress_meter;
+        SpeedMeter result = _speed_meter;
 
         if (result == null) {
 
             synchronized (this) {
 
-                result = _progress_meter;
+                result = _speed_meter;
 
                 if (result == null) {
 
-                    _progress_meter = result = new ProgressMeter(this);
+                    _speed_meter = result = new SpeedMeter(this);
 
                 }
             }
@@ -341,11 +374,15 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
             setPause(true);
 
+            //Let the writer save its chunk bitmap while the download is idle
+            if (_chunkwriter != null) {
+
+                _chunkwriter.secureNotify();
+            }
+
             getView().pause();
         }
 
-        _main_panel.getGlobal_dl_speed().secureNotify();
-
         _main_panel.getDownload_manager().secureNotify();
     }
 
@@ -374,7 +411,7 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
     @Override
     public void checkSlotsAndWorkers() {
 
-        if (!isExit()) {
+        if (!isExit() && !_auto_slots) {
 
             synchronized (_workers_lock) {
 
@@ -406,8 +443,8 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
     }
 
     @Override
-    public ConcurrentLinkedQueue<Integer> getPartialProgress() {
-        return _partialProgressQueue;
+    public LongAdder getPartialProgress() {
+        return _partial_progress;
     }
 
     @Override
@@ -439,7 +476,20 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
                 if (!_file.exists()) {
                     getView().printStatusNormal("Starting download (retrieving MEGA temp link), please wait...");
 
-                    _last_download_url = getMegaFileDownloadUrl(_url);
+                    DownloadUrlLeaseManager.getInstance().getUrl(_url, new DownloadUrlLeaseManager.UrlFetcher() {
+                        @Override
+                        public String fetchUrl() throws IOException {
+
+                            try {
+
+                                return getMegaFileDownloadUrl(_url);
+
+                            } catch (InterruptedException ex) {
+
+                                throw new InterruptedIOException(ex.getMessage());
+                            }
+                        }
+                    });
 
                     if (!_exit) {
 
@@ -453,48 +503,65 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
                         _file = new File(filename + ".mctemp");
 
+                        _chunk_bitmap_file = new File(filename + ".mcbitmap");
+
+                        _chunk_macs_file = new File(filename + ".mcmacs");
+
                         if (_file.exists()) {
                             getView().printStatusNormal("File exists, resuming download...");
+                        }
 
-                            long max_size = calculateMaxTempFileSize(_file.length());
+                        _chunkwriter = new ChunkWriter(this);
 
-                            if (max_size != _file.length()) {
-                                getView().printStatusNormal("Truncating temp file...");
+                        _progress = _chunkwriter.getBytes_written();
 
-                                try (FileChannel out_truncate = new FileOutputStream(filename + ".mctemp", true).getChannel()) {
-                                    out_truncate.truncate(max_size);
-                                }
-                            }
+                        swingReflectionInvoke("setValue", getView().getProgress_pbar(), (int) ceil(_progress_bar_rate * _progress));
 
-                            _progress = _file.length();
-                            swingReflectionInvoke("setValue", getView().getProgress_pbar(), (int) ceil(_progress_bar_rate * _progress));
-                        } else {
-                            _progress = 0;
-                            swingReflectionInvoke("setValue", getView().getProgress_pbar(), 0);
-                        }
+                        _output_file = new RandomAccessFile(_file, "rw");
 
-                        _output_stream = new BufferedOutputStream(new FileOutputStream(_file, (_progress > 0)));
+                        _output_channel = _output_file.getChannel();
 
-                        _chunkwriter = new ChunkWriter(this);
+                        if (_output_file.length() != _file_size) {
+                            getView().printStatusNormal("Allocating temp file...");
 
-                        _thread_pool.execute(_chunkwriter);
+                            //Once preallocated, only the bitmap can tell which chunks are really there
+                            _chunkwriter.saveChunkBitmap();
+
+                            _output_file.setLength(_file_size);
+                        }
 
-                        _thread_pool.execute(getProgress_meter());
+                        _thread_pool.execute(_chunkwriter);
 
-                        _thread_pool.execute(getSpeed_meter());
+                        ProgressMeter.getInstance().attach(this);
 
-                        getMain_panel().getGlobal_dl_speed().secureNotify();
+                        getMain_panel().getGlobal_speed_meter().attachSpeedMeter(getSpeed_meter(), false);
 
                         synchronized (_workers_lock) {
 
                             if (_use_slots) {
 
                                 for (int t = 1; t <= _slots; t++) {
-                                    ChunkDownloader c = new ChunkDownloader(t, this);
+                                    ChunkDownloader c = newChunkDownloader(t);
 
                                     _chunkworkers.add(c);
 
-                                    _thread_pool.execute(c);
+                                    try {
+
+                                        _thread_pool.executeWorker(c);
+
+                                    } catch (RejectedExecutionException ex) {
+
+                                        _chunkworkers.remove(c);
+
+                                        getLogger(Download.class.getName()).log(Level.WARNING, "No free threads left, starting with {0} slots", _chunkworkers.size());
+
+                                        break;
+                                    }
+                                }
+
+                                if (_chunkworkers.isEmpty()) {
+
+                                    emergencyStopDownloader("No free threads to start the download!");
                                 }
 
                                 swingReflectionInvoke("setVisible", getView().getSlots_label(), true);
@@ -503,13 +570,33 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
                                 swingReflectionInvoke("setVisible", getView().getSlot_status_label(), true);
 
+                                String auto_slots = selectSettingValueFromDB("auto_slots_down");
+
+                                _auto_slots = auto_slots != null ? auto_slots.equals("yes") : AUTO_SLOTS_DEFAULT;
+
+                                if (_auto_slots) {
+
+                                    swingReflectionInvoke("setEnabled", getView().getSlots_spinner(), false);
+
+                                    _thread_pool.execute(new SlotAutoTuner(this));
+                                }
+
                             } else {
 
                                 ChunkDownloaderMono c = new ChunkDownloaderMono(this);
 
                                 _chunkworkers.add(c);
 
-                                _thread_pool.execute(c);
+                                try {
+
+                                    _thread_pool.executeWorker(c);
+
+                                } catch (RejectedExecutionException ex) {
+
+                                    _chunkworkers.remove(c);
+
+                                    emergencyStopDownloader("No free threads to start the download!");
+                                }
 
                                 swingReflectionInvoke("setVisible", getView().getSlots_label(), false);
 
@@ -529,17 +616,23 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
                         secureWait();
 
-                        _thread_pool.shutdown();
+                        String verify_file = selectSettingValueFromDB("verify_down_file");
 
-                        System.out.println("Chunkdownloaders finished!");
+                        boolean verify = verify_file != null && verify_file.equals("yes");
 
-                        getSpeed_meter().setExit(true);
+                        int repaired_chunks = 0;
 
-                        getMain_panel().getGlobal_dl_speed().secureNotify();
+                        if (verify && !_exit && _chunkwriter.getBytes_written() == _file_size) {
 
-                        getProgress_meter().setExit(true);
+                            //Damaged chunks go back to the slot workers, so the check runs before they are shut down
+                            repaired_chunks = verifyAndRepairFile();
+                        }
 
-                        getProgress_meter().secureNotify();
+                        _thread_pool.shutdown();
+
+                        System.out.println("Chunkdownloaders finished!");
+
+                        getMain_panel().getGlobal_speed_meter().detachSpeedMeter(getSpeed_meter());
 
                         try {
 
@@ -560,13 +653,15 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
                         System.out.println("Downloader thread pool finished!");
 
-                        _output_stream.close();
+                        ProgressMeter.getInstance().detach(this);
+
+                        _output_file.close();
 
                         swingReflectionInvoke("setVisible", new Object[]{getView().getSpeed_label(), getView().getRemtime_label(), getView().getPause_button(), getView().getStop_button(), getView().getSlots_label(), getView().getSlots_spinner(), getView().getKeep_temp_checkbox()}, false);
 
                         getMain_panel().getDownload_manager().secureNotify();
 
-                        if (_progress == _file_size) {
+                        if (_chunkwriter.getBytes_written() == _file_size) {
                             if (_file.length() != _file_size) {
 
                                 throw new IOException("El tamaño del fichero es incorrecto!");
@@ -576,53 +671,35 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
                             _file.renameTo(new File(filename));
 
-                            String verify_file = selectSettingValueFromDB("verify_down_file");
-
-                            if (verify_file != null && verify_file.equals("yes")) {
-                                _checking_cbc = true;
-
-                                getView().printStatusNormal("Waiting to check file integrity...");
-
-                                _progress = 0;
-
-                                swingReflectionInvoke("setValue", getView().getProgress_pbar(), 0);
+                            _chunkwriter.deleteChunkStateFiles();
 
-                                synchronized (CBC_LOCK) {
+                            if (verify) {
 
-                                    getView().printStatusNormal("Checking file integrity, please wait...");
+                                if (_exit) {
+                                    exit_message = "File successfully downloaded! (but integrity check CANCELED)";
 
-                                    swingReflectionInvoke("setVisible", getView().getStop_button(), true);
+                                    getView().printStatusOK(exit_message);
 
-                                    swingReflectionInvoke("setText", getView().getStop_button(), "CANCEL CHECK");
+                                    _status_error = true;
 
-                                    getMain_panel().getDownload_manager().getTransference_running_list().remove(this);
+                                } else if (repaired_chunks == 0) {
+                                    exit_message = "File successfully downloaded! (Integrity check PASSED)";
 
-                                    getMain_panel().getDownload_manager().secureNotify();
+                                    getView().printStatusOK(exit_message);
 
-                                    if (verifyFileCBCMAC(filename)) {
-                                        exit_message = "File successfully downloaded! (Integrity check PASSED)";
+                                } else if (repaired_chunks > 0) {
+                                    exit_message = "File successfully downloaded! (Integrity check PASSED after repairing " + repaired_chunks + " chunks)";
 
-                                        getView().printStatusOK(exit_message);
-                                    } else if (!_exit) {
-                                        exit_message = "BAD NEWS :( File is DAMAGED!";
+                                    getView().printStatusOK(exit_message);
 
-                                        getView().printStatusError(exit_message);
+                                } else {
+                                    exit_message = "BAD NEWS :( File is DAMAGED! (repair failed)";
 
-                                        _status_error = true;
-                                    } else {
-                                        exit_message = "File successfully downloaded! (but integrity check CANCELED)";
-
-                                        getView().printStatusOK(exit_message);
-
-                                        _status_error = true;
-
-                                    }
-
-                                    swingReflectionInvoke("setVisible", getView().getStop_button(), false);
-
-                                    swingReflectionInvoke("setValue", getView().getProgress_pbar(), MAX_VALUE);
+                                    getView().printStatusError(exit_message);
 
+                                    _status_error = true;
                                 }
+
                             } else {
                                 exit_message = "File successfully downloaded!";
 
@@ -640,6 +717,8 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
                             if (_file != null && !(boolean) swingReflectionInvokeAndWaitForReturn("isSelected", getView().getKeep_temp_checkbox())) {
                                 _file.delete();
+
+                                _chunkwriter.deleteChunkStateFiles();
                             }
 
                         } else if (_fatal_error != null) {
@@ -886,59 +965,51 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
     public String getDownloadUrlForWorker() throws IOException {
 
-        synchronized (_dl_url_lock) {
-
-            if (_last_download_url != null && checkMegaDownloadUrl(_last_download_url)) {
-
-                return _last_download_url;
-            }
-
-            boolean error;
+        return DownloadUrlLeaseManager.getInstance().getUrl(_url, _worker_url_fetcher);
+    }
 
-            int api_error_retry = 0;
+    public String renewDownloadUrlForWorker(String failed_url) throws IOException {
 
-            String download_url;
+        return DownloadUrlLeaseManager.getInstance().renewUrl(_url, failed_url, _worker_url_fetcher);
+    }
 
-            do {
+    private String fetchDownloadUrlForWorker() throws IOException {
 
-                error = false;
+        boolean error;
 
-                try {
-                    if (findFirstRegex("://mega(\\.co)?\\.nz/", _url, 0) != null) {
-                        MegaAPI ma = new MegaAPI();
+        int api_error_retry = 0;
 
-                        download_url = ma.getMegaFileDownloadUrl(_url);
+        String download_url = null;
 
-                    } else {
-                        download_url = MegaCrypterAPI.getMegaFileDownloadUrl(_url, _file_pass, _file_noexpire);
-                    }
+        do {
 
-                    if (checkMegaDownloadUrl(download_url)) {
+            error = false;
 
-                        _last_download_url = download_url;
+            try {
+                if (findFirstRegex("://mega(\\.co)?\\.nz/", _url, 0) != null) {
+                    MegaAPI ma = new MegaAPI();
 
-                    } else {
+                    download_url = ma.getMegaFileDownloadUrl(_url);
 
-                        error = true;
-                    }
+                } else {
+                    download_url = MegaCrypterAPI.getMegaFileDownloadUrl(_url, _file_pass, _file_noexpire);
+                }
 
-                } catch (MegaCrypterAPIException | MegaAPIException e) {
+            } catch (MegaCrypterAPIException | MegaAPIException e) {
 
-                    error = true;
+                error = true;
 
-                    for (long i = getWaitTimeExpBackOff(api_error_retry++); i > 0 && !_exit; i--) {
-                        try {
-                            sleep(1000);
-                        } catch (InterruptedException ex) {
-                        }
+                for (long i = getWaitTimeExpBackOff(api_error_retry++); i > 0 && !_exit; i--) {
+                    try {
+                        sleep(1000);
+                    } catch (InterruptedException ex) {
                     }
                 }
+            }
 
-            } while (error);
-
-            return _last_download_url;
+        } while (error);
 
-        }
+        return download_url;
     }
 
     public void startSlot() {
@@ -949,21 +1020,29 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
                 int chunk_id = _chunkworkers.size() + 1;
 
-                ChunkDownloader c = new ChunkDownloader(chunk_id, this);
+                ChunkDownloader c = newChunkDownloader(chunk_id);
 
                 _chunkworkers.add(c);
 
                 try {
 
-                    _thread_pool.execute(c);
+                    _thread_pool.executeWorker(c);
+
+                } catch (RejectedExecutionException ex) {
+
+                    _chunkworkers.remove(c);
 
-                } catch (java.util.concurrent.RejectedExecutionException e) {
-                    System.out.println(e.getMessage());
+                    getLogger(Download.class.getName()).log(Level.WARNING, null, ex);
                 }
             }
         }
     }
 
+    private ChunkDownloader newChunkDownloader(int id) {
+
+        return _async_http ? new AsyncChunkDownloader(id, this) : new ChunkDownloader(id, this);
+    }
+
     public void stopLastStartedSlot() {
 
         if (!_exit) {
@@ -1000,6 +1079,47 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
         }
     }
 
+    public int countActiveSlots() {
+
+        synchronized (_workers_lock) {
+
+            int active = 0;
+
+            for (ChunkDownloader c : _chunkworkers) {
+
+                if (!c.isExit()) {
+                    active++;
+                }
+            }
+
+            return active;
+        }
+    }
+
+    public void setActiveSlots(int slots) {
+
+        synchronized (_workers_lock) {
+
+            int active = countActiveSlots();
+
+            while (active < slots && !_exit) {
+
+                startSlot();
+
+                active++;
+            }
+
+            while (active > slots && !_exit) {
+
+                stopLastStartedSlot();
+
+                active--;
+            }
+
+            swingReflectionInvoke("setValue", getView().getSlots_spinner(), slots);
+        }
+    }
+
     public void stopThisSlot(ChunkDownloader chunkdownloader) {
 
         synchronized (_workers_lock) {
@@ -1017,7 +1137,7 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
                         swingReflectionInvokeAndWait("setValue", getView().getSlots_spinner(), (int) swingReflectionInvokeAndWaitForReturn("getValue", getView().getSlots_spinner()) - 1);
                     }
 
-                } else if (!_finishing_download && _use_slots) {
+                } else if (!_finishing_download && _use_slots && !_auto_slots) {
 
                     swingReflectionInvoke("setEnabled", getView().getSlots_spinner(), true);
                 }
@@ -1039,86 +1159,208 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
     }
 
-    private boolean verifyFileCBCMAC(String filename) throws FileNotFoundException, Exception, NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
-        int[] int_key = bin2i32a(UrlBASE642Bin(_file_key));
+    private int[][] calculateFileMACs(boolean on_disk) throws Exception {
 
-        int[] iv = new int[2];
+        FileMACVerifier mac_verifier = new FileMACVerifier(this, _file.getAbsolutePath(), _chunkwriter.getByte_file_key(), getFileMACIV());
 
-        iv[0] = int_key[4];
-        iv[1] = int_key[5];
+        _checking_cbc = true;
 
-        int[] meta_mac = new int[2];
+        try {
 
-        meta_mac[0] = int_key[6];
-        meta_mac[1] = int_key[7];
+            if (!on_disk) {
 
-        int[] file_mac = {0, 0, 0, 0};
+                getView().printStatusNormal("Checking file integrity, please wait...");
 
-        int[] cbc_iv = {0, 0, 0, 0};
+                //The chunk MACs were computed as the chunks arrived: only chunks resumed from an old temp file (no stored MAC) are read back
+                return mac_verifier.calculateMissingChunkMACs(_chunkwriter.getChunk_macs());
+            }
 
-        Cipher cryptor = genCrypter("AES", "AES/CBC/NoPadding", _chunkwriter.getByte_file_key(), i32a2bin(cbc_iv));
+            getView().printStatusNormal("Waiting to check file integrity...");
 
-        try (FileInputStream is = new FileInputStream(new File(filename))) {
+            FileMACVerifier.VERIFICATION_SEMAPHORE.acquireUninterruptibly();
 
-            long chunk_id = 1;
-            long tot = 0L;
-            byte[] chunk_buffer = new byte[16 * 1024];
-            byte[] byte_block = new byte[16];
-            int[] int_block;
-            int re, reads, to_read;
             try {
-                while (!_exit) {
-                    Chunk chunk = new Chunk(chunk_id++, _file_size, null);
 
-                    tot += chunk.getSize();
+                getView().printStatusNormal("Checking file integrity, please wait...");
 
-                    int[] chunk_mac = {iv[0], iv[1], iv[0], iv[1]};
+                swingReflectionInvoke("setVisible", getView().getStop_button(), true);
 
-                    do {
-                        to_read = chunk.getSize() - chunk.getOutputStream().size() >= chunk_buffer.length ? chunk_buffer.length : (int) (chunk.getSize() - chunk.getOutputStream().size());
+                swingReflectionInvoke("setText", getView().getStop_button(), "CANCEL CHECK");
 
-                        re = is.read(chunk_buffer, 0, to_read);
+                return mac_verifier.calculateChunkMACs();
 
-                        chunk.getOutputStream().write(chunk_buffer, 0, re);
+            } finally {
 
-                    } while (!_exit && chunk.getOutputStream().size() < chunk.getSize());
+                FileMACVerifier.VERIFICATION_SEMAPHORE.release();
 
-                    InputStream chunk_is = chunk.getInputStream();
+                swingReflectionInvoke("setVisible", getView().getStop_button(), false);
 
-                    while (!_exit && (reads = chunk_is.read(byte_block)) != -1) {
-                        if (reads < byte_block.length) {
-                            for (int i = reads; i < byte_block.length; i++) {
-                                byte_block[i] = 0;
-                            }
-                        }
+                swingReflectionInvoke("setText", getView().getStop_button(), "CANCEL DOWNLOAD");
+            }
 
-                        int_block = bin2i32a(byte_block);
+        } finally {
 
-                        for (int i = 0; i < chunk_mac.length; i++) {
-                            chunk_mac[i] ^= int_block[i];
-                        }
+            _checking_cbc = false;
+        }
+    }
 
-                        chunk_mac = bin2i32a(cryptor.doFinal(i32a2bin(chunk_mac)));
-                    }
+    private boolean verifyFileCBCMAC(int[][] file_macs) throws Exception {
 
-                    for (int i = 0; i < file_mac.length; i++) {
-                        file_mac[i] ^= chunk_mac[i];
-                    }
+        ChunkMACEngine mac_engine = new ChunkMACEngine(_chunkwriter.getByte_file_key(), getFileMACIV());
+
+        for (int[] chunk_mac : file_macs) {
+            mac_engine.fold(chunk_mac);
+        }
+
+        return checkMetaMAC(mac_engine.getMeta_mac());
+    }
+
+    private int verifyAndRepairFile() throws Exception {
+
+        String verify_on_disk = selectSettingValueFromDB("verify_down_file_disk");
+
+        boolean on_disk = verify_on_disk != null ? verify_on_disk.equals("yes") : VERIFY_ON_DISK_DEFAULT;
+
+        int[][] chunk_macs = _chunkwriter.getChunk_macs(), file_macs = null;
+
+        BitSet refetched = new BitSet();
+
+        long max_repair_bytes = Math.max(MIN_REPAIR_ROUND_SIZE, (long) (_file_size * MAX_REPAIR_RATIO)), repair_bytes = 0, round_size = Math.max(MIN_REPAIR_ROUND_SIZE, max_repair_bytes / REPAIR_ROUNDS);
+
+        int repaired_chunks = 0;
+
+        while (!_exit) {
+
+            ProgressMeter.getInstance().detach(this);
+
+            if (file_macs == null && (file_macs = calculateFileMACs(on_disk)) == null) {
+
+                return -1;
+            }
 
-                    file_mac = bin2i32a(cryptor.doFinal(i32a2bin(file_mac)));
+            if (verifyFileCBCMAC(file_macs)) {
 
-                    setProgress(tot);
+                return repaired_chunks;
+            }
+
+            ArrayList<Long> suspect_chunks = new ArrayList<>();
+
+            long round_bytes = 0, chunk_size;
+
+            //Chunks that changed on disk after they were received are known to be bad
+            for (int i = 0; i < file_macs.length; i++) {
+
+                if (chunk_macs[i] != null && !Arrays.equals(chunk_macs[i], file_macs[i]) && !refetched.get(i + 1) && repair_bytes + round_bytes + (chunk_size = Chunk.calculateChunkSize(i + 1, _file_size)) <= max_repair_bytes) {
 
+                    suspect_chunks.add((long) i + 1);
+
+                    round_bytes += chunk_size;
                 }
+            }
+
+            //Bytes that were already wrong on receipt leave no trace in the MACs: only a fresh copy can tell, so try the rest a round at a time
+            if (suspect_chunks.isEmpty()) {
+
+                for (int i = refetched.nextClearBit(1); i <= file_macs.length && round_bytes < round_size && repair_bytes + round_bytes + (chunk_size = Chunk.calculateChunkSize(i, _file_size)) <= max_repair_bytes; i = refetched.nextClearBit(i + 1)) {
+
+                    suspect_chunks.add((long) i);
+
+                    round_bytes += chunk_size;
+                }
+            }
+
+            if (suspect_chunks.isEmpty()) {
+
+                return -1;
+            }
+
+            getView().printStatusNormal("Integrity check FAILED, downloading " + suspect_chunks.size() + " suspect chunks again (" + formatBytes(repair_bytes + round_bytes) + " of max " + formatBytes(max_repair_bytes) + ")...");
+
+            int[][] old_macs = new int[suspect_chunks.size()][];
+
+            for (int i = 0; i < old_macs.length; i++) {
 
-            } catch (ChunkInvalidIdException e) {
+                old_macs[i] = file_macs[(int) (long) suspect_chunks.get(i) - 1];
             }
 
-            int[] cbc = {file_mac[0] ^ file_mac[1], file_mac[2] ^ file_mac[3]};
+            requeueChunks(suspect_chunks);
 
-            return (cbc[0] == meta_mac[0] && cbc[1] == meta_mac[1]);
+            secureWait();
+
+            if (_exit || _chunkwriter.getBytes_written() != _file_size) {
+
+                return -1;
+            }
+
+            for (int i = 0; i < old_macs.length; i++) {
+
+                int chunk_index = (int) (long) suspect_chunks.get(i) - 1;
+
+                //The writer hashed the fresh copy from the same buffer it wrote to disk
+                file_macs[chunk_index] = chunk_macs[chunk_index];
+
+                refetched.set(chunk_index + 1);
+
+                if (!Arrays.equals(old_macs[i], file_macs[chunk_index])) {
+
+                    repaired_chunks++;
+                }
+            }
+
+            repair_bytes += round_bytes;
         }
 
+        return -1;
+    }
+
+    private void requeueChunks(ArrayList<Long> chunk_ids) throws IOException {
+
+        _chunkwriter.requeueChunks(chunk_ids);
+
+        synchronized (_chunkid_lock) {
+
+            _last_chunk_id_dispatched = 0L;
+        }
+
+        setProgress(_chunkwriter.getBytes_written());
+
+        ProgressMeter.getInstance().attach(this);
+
+        _thread_pool.execute(_chunkwriter);
+
+        synchronized (_workers_lock) {
+
+            _finishing_download = false;
+
+            if (_use_slots) {
+
+                swingReflectionInvoke("setEnabled", getView().getSlots_spinner(), !_auto_slots);
+
+                setActiveSlots((int) Math.min(_slots, chunk_ids.size()));
+
+            } else {
+
+                ChunkDownloaderMono c = new ChunkDownloaderMono(this);
+
+                _chunkworkers.add(c);
+
+                _thread_pool.executeWorker(c);
+            }
+        }
+    }
+
+    private int[] getFileMACIV() {
+
+        int[] int_key = bin2i32a(UrlBASE642Bin(_file_key));
+
+        return new int[]{int_key[4], int_key[5]};
+    }
+
+    private boolean checkMetaMAC(int[] cbc) {
+
+        int[] int_key = bin2i32a(UrlBASE642Bin(_file_key));
+
+        return (cbc != null && cbc[0] == int_key[6] && cbc[1] == int_key[7]);
     }
 
     public void stopDownloader() {
@@ -1375,15 +1617,94 @@ public final class Download implements Transference, Runnable, SecureSingleThrea
 
             Long next_id;
 
-            if ((next_id = _rejectedChunkIds.poll()) != null) {
-                return next_id;
-            } else {
-                return ++_last_chunk_id_dispatched;
+            while ((next_id = _rejectedChunkIds.pollFirst()) != null) {
+
+                if (!isChunkDone(next_id)) {
+                    return next_id;
+                }
             }
+
+            do {
+                next_id = ++_last_chunk_id_dispatched;
+            } while (_chunkwriter.isChunkWritten(next_id));
+
+            return next_id;
         }
 
     }
 
+    public boolean isChunkDone(long chunk_id) {
+
+        return _chunkwriter.isChunkWritten(chunk_id) || _chunkwriter.getChunk_queue().containsKey(chunk_id);
+    }
+
+    public ArrayList<Long> nextChunkIdRun(long max_bytes) {
+
+        int active_slots = Math.max(1, countActiveSlots());
+
+        synchronized (_chunkid_lock) {
+
+            ArrayList<Long> run = new ArrayList<>();
+
+            long last_id = Chunk.calculateLastChunkId(_file_size);
+
+            //In the last round of runs any request may end up racing an endgame duplicate, and the loser is aborted: keep them one chunk long
+            if (_last_chunk_id_dispatched >= last_id || _file_size - Chunk.calculateChunkOffset(_last_chunk_id_dispatched + 1) <= max_bytes * active_slots) {
+
+                max_bytes = Math.min(max_bytes, ChunkRangePlanner.MIN_RANGE_SIZE);
+            }
+
+            while (_last_chunk_id_dispatched < last_id && _chunkwriter.isChunkWritten(_last_chunk_id_dispatched + 1)) {
+                _last_chunk_id_dispatched++;
+            }
+
+            boolean endgame = _last_chunk_id_dispatched >= last_id && _rejectedChunkIds.isEmpty();
+
+            long straggler = _endgame.nextStraggler(_last_chunk_id_dispatched, endgame);
+
+            if (straggler > 0) {
+
+                run.add(straggler);
+
+                return run;
+            }
+
+            if (endgame && _endgame.hasFetches()) {
+
+                return run;
+            }
+
+            long next_id = nextChunkId(), run_bytes = Chunk.calculateChunkSize(next_id, _file_size);
+
+            run.add(next_id);
+
+            if (next_id == _last_chunk_id_dispatched) {
+
+                while (next_id < last_id && !_chunkwriter.isChunkWritten(next_id + 1) && run_bytes + Chunk.calculateChunkSize(next_id + 1, _file_size) <= max_bytes) {
+
+                    next_id = ++_last_chunk_id_dispatched;
+
+                    run_bytes += Chunk.calculateChunkSize(next_id, _file_size);
+
+                    run.add(next_id);
+                }
+
+            } else {
+
+                while (run_bytes + Chunk.calculateChunkSize(next_id + 1, _file_size) <= max_bytes && !isChunkDone(next_id + 1) && _rejectedChunkIds.remove(next_id + 1)) {
+
+                    next_id++;
+
+                    run_bytes += Chunk.calculateChunkSize(next_id, _file_size);
+
+                    run.add(next_id);
+                }
+            }
+
+            return run;
+        }
+    }
+
     public void rejectChunkId(long chunk_id) {
         _rejectedChunkIds.add(chunk_id);
     }
@@ -0,0 +1,150 @@
+package megabasterd;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import static megabasterd.MiscTools.checkMegaDownloadUrl;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class DownloadUrlLeaseManager {
+
+    public static final int URL_LEASE_TTL = 3600;
+
+    private final ConcurrentHashMap<String, UrlLease> _leases;
+
+    public static DownloadUrlLeaseManager getInstance() {
+
+        return LazyHolder.INSTANCE;
+    }
+
+    private DownloadUrlLeaseManager() {
+
+        _leases = new ConcurrentHashMap<>();
+    }
+
+    public static boolean isUrlError(int http_status) {
+
+        return (http_status >= 400 && http_status < 500 && http_status != 416) || http_status == 509;
+    }
+
+    public String getUrl(String link, UrlFetcher fetcher) throws IOException {
+
+        UrlLease lease = getLease(link);
+
+        String url = lease.getValidUrl();
+
+        if (url != null) {
+
+            return url;
+        }
+
+        lease.getLock().lock();
+
+        try {
+
+            if ((url = lease.getValidUrl()) == null) {
+
+                url = lease.setUrl(fetcher.fetchUrl());
+            }
+
+            return url;
+
+        } finally {
+
+            lease.getLock().unlock();
+        }
+    }
+
+    public String renewUrl(String link, String failed_url, UrlFetcher fetcher) throws IOException {
+
+        UrlLease lease = getLease(link);
+
+        lease.getLock().lock();
+
+        try {
+
+            String url = lease.getValidUrl();
+
+            if (url != null && !url.equals(failed_url)) {
+
+                return url;
+            }
+
+            if (failed_url != null && checkMegaDownloadUrl(failed_url)) {
+
+                return lease.setUrl(failed_url);
+            }
+
+            System.out.println("Download url for " + MiscTools.truncateText(link, 80) + " is not valid anymore. Refreshing...");
+
+            return lease.setUrl(fetcher.fetchUrl());
+
+        } finally {
+
+            lease.getLock().unlock();
+        }
+    }
+
+    public void removeUrl(String link) {
+
+        _leases.remove(link);
+    }
+
+    private UrlLease getLease(String link) {
+
+        UrlLease lease = _leases.get(link);
+
+        if (lease == null) {
+
+            UrlLease new_lease = new UrlLease();
+
+            if ((lease = _leases.putIfAbsent(link, new_lease)) == null) {
+
+                lease = new_lease;
+            }
+        }
+
+        return lease;
+    }
+
+    public interface UrlFetcher {
+
+        String fetchUrl() throws IOException;
+    }
+
+    private static final class UrlLease {
+
+        private final ReentrantLock _lock = new ReentrantLock();
+        private volatile String _url;
+        private volatile long _expire_time;
+
+        public ReentrantLock getLock() {
+            return _lock;
+        }
+
+        public String getValidUrl() {
+
+            return (_url != null && System.currentTimeMillis() < _expire_time) ? _url : null;
+        }
+
+        public String setUrl(String url) {
+
+            if (url != null) {
+
+                _url = url;
+
+                _expire_time = System.currentTimeMillis() + URL_LEASE_TTL * 1000L;
+            }
+
+            return url;
+        }
+    }
+
+    private final static class LazyHolder {
+
+        private static final DownloadUrlLeaseManager INSTANCE = new DownloadUrlLeaseManager();
+    }
+}
@@ -115,7 +115,7 @@ public final class DownloadView extends javax.swing.JPanel implements Transferen
             }
         }, true);
 
-        swingReflectionInvokeAndWait("setModel", slots_spinner, new SpinnerNumberModel(_download.getMain_panel().getDefault_slots_down(), Download.MIN_WORKERS, Download.MAX_WORKERS, 1));
+        swingReflectionInvokeAndWait("setModel", slots_spinner, new SpinnerNumberModel(_download.getMain_panel().getDefault_slots_down(), Download.MIN_WORKERS, _download.getMax_workers(), 1));
 
         swingReflectionInvoke("setEditable", ((JSpinner.DefaultEditor) slots_spinner.getEditor()).getTextField(), false);
 
@@ -181,7 +181,13 @@ public final class DownloadView extends javax.swing.JPanel implements Transferen
         speed_label.setFont(new java.awt.Font("Verdana", 3, 26)); // NOI18N
         speed_label.setHorizontalAlignment(javax.swing.SwingConstants.LEFT);
         speed_label.setText("speed");
+        speed_label.setToolTipText("Click to limit this download speed");
         speed_label.setDoubleBuffered(true);
+        speed_label.addMouseListener(new java.awt.event.MouseAdapter() {
+            public void mouseReleased(java.awt.event.MouseEvent evt) {
+                speed_labelMouseReleased(evt);
+            }
+        });
 
         progress_pbar.setFont(new java.awt.Font("Verdana", 1, 18)); // NOI18N
         progress_pbar.setDoubleBuffered(true);
@@ -400,6 +406,33 @@ public final class DownloadView extends javax.swing.JPanel implements Transferen
 
     }//GEN-LAST:event_open_folder_buttonActionPerformed
 
+    private void speed_labelMouseReleased(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_speed_labelMouseReleased
+
+        if (!speed_label.isEnabled()) {
+            return;
+        }
+
+        BandwidthNode node = _download.getBandwidth_node();
+
+        String max_speed = JOptionPane.showInputDialog(_download.getMain_panel().getView(), "Max speed for this download (KB/s, 0 = no limit):", node.getCap() / 1024);
+
+        if (max_speed != null) {
+
+            try {
+
+                int kbytes = Integer.parseInt(max_speed.trim());
+
+                node.setCap(Math.max(0, kbytes) * 1024L);
+
+                speed_label.setForeground(node.getCap() > 0 ? new Color(255, 0, 0) : new Color(0, 128, 255));
+
+            } catch (NumberFormatException ex) {
+
+                JOptionPane.showMessageDialog(_download.getMain_panel().getView(), "Wrong speed value");
+            }
+        }
+    }//GEN-LAST:event_speed_labelMouseReleased
+
     @Override
     public void pause() {
 
@@ -416,6 +449,11 @@ public final class DownloadView extends javax.swing.JPanel implements Transferen
         printStatusNormal("Downloading file from mega ...");
 
         swingReflectionInvoke("setEnabled", new Object[]{pause_button, speed_label, slots_label, slots_spinner}, true);
+
+        if (_download.isAuto_slots()) {
+            swingReflectionInvoke("setEnabled", slots_spinner, false);
+        }
+
         swingReflectionInvoke("setVisible", new Object[]{stop_button, keep_temp_checkbox}, false);
         swingReflectionInvoke("setText", pause_button, "PAUSE DOWNLOAD");
         swingReflectionInvoke("setVisible", _download.getMain_panel().getView().getPause_all_down_button(), true);
@@ -498,7 +536,7 @@ public final class DownloadView extends javax.swing.JPanel implements Transferen
                 }
             }
 
-            int conta_error = 0;
+            int conta_error = 0, conta_stalled = 0;
 
             for (ChunkDownloader c : _download.getChunkworkers()) {
 
@@ -506,9 +544,14 @@ public final class DownloadView extends javax.swing.JPanel implements Transferen
 
                     conta_error++;
                 }
+
+                if (c.isStalled()) {
+
+                    conta_stalled++;
+                }
             }
 
-            if (conta_error > 0) {
+            if (conta_error > 0 || conta_stalled > 0) {
 
                 swingReflectionInvoke("setForeground", slot_status_label, Color.red);
 
@@ -517,7 +560,7 @@ public final class DownloadView extends javax.swing.JPanel implements Transferen
                 swingReflectionInvoke("setForeground", slot_status_label, Color.black);
             }
 
-            swingReflectionInvoke("setText", slot_status_label, (conta_exit > 0 ? "Removing: " + conta_exit : "") + (conta_error > 0 ? ((conta_exit > 0 ? " / " : "") + "Error: " + conta_error) : ""));
+            swingReflectionInvoke("setText", slot_status_label, (conta_exit > 0 ? "Removing: " + conta_exit : "") + (conta_error > 0 ? ((conta_exit > 0 ? " / " : "") + "Error: " + conta_error) : "") + (conta_stalled > 0 ? ((conta_exit > 0 || conta_error > 0 ? " / " : "") + "Stalled: " + conta_stalled) : ""));
 
         }
     }
@@ -0,0 +1,343 @@
+package megabasterd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import static java.util.logging.Logger.getLogger;
+import org.apache.http.client.methods.HttpGet;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class EndgameScheduler {
+
+    public static final int MAX_CHUNK_COPIES = 2;
+    public static final long ENDGAME_MIN_AGE = 2000L;
+    public static final long STRAGGLER_MIN_AGE = 5000L;
+    public static final double STRAGGLER_FACTOR = 4d;
+    public static final int STRAGGLER_LAG_CHUNKS = 16;
+    public static final double EWMA_ALPHA = 0.2d;
+
+    private final HashMap<Long, ArrayList<Fetch>> _fetches;
+    private final ArrayList<Runnable> _idle_workers;
+    private final long _file_size;
+    private double _nanos_per_byte;
+    private long _frontier;
+    private boolean _endgame;
+    private long _generation;
+    private ScheduledFuture<?> _wakeup_timer;
+    private long _wakeup_time;
+
+    public EndgameScheduler(long file_size) {
+        _fetches = new HashMap<>();
+        _idle_workers = new ArrayList<>();
+        _file_size = file_size;
+        _nanos_per_byte = 0d;
+        _frontier = 0L;
+        _endgame = false;
+        _generation = 0L;
+        _wakeup_timer = null;
+        _wakeup_time = 0L;
+    }
+
+    public synchronized long getGeneration() {
+
+        return _generation;
+    }
+
+    public synchronized boolean waitForWork(long generation, Runnable wakeup) {
+
+        /* Idle workers sleep until a request ends (it may leave rejected chunks behind) or the first running fetch becomes a straggler. */
+        if (generation != _generation) {
+
+            return false;
+        }
+
+        _idle_workers.add(wakeup);
+
+        scheduleWakeup();
+
+        return true;
+    }
+
+    private void scheduleWakeup() {
+
+        long delay = nextStragglerDelay(), qualify_time = System.nanoTime() + delay;
+
+        if (delay != -1 && (_wakeup_timer == null || qualify_time - _wakeup_time < 0)) {
+
+            if (_wakeup_timer != null) {
+
+                _wakeup_timer.cancel(false);
+            }
+
+            _wakeup_time = qualify_time;
+
+            _wakeup_timer = TransferRuntime.getInstance().getScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    wakeIdle();
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void wakeIdle() {
+
+        ArrayList<Runnable> idle_workers;
+
+        synchronized (this) {
+
+            _generation++;
+
+            if (_wakeup_timer != null) {
+
+                _wakeup_timer.cancel(false);
+
+                _wakeup_timer = null;
+            }
+
+            idle_workers = new ArrayList<>(_idle_workers);
+
+            _idle_workers.clear();
+        }
+
+        for (Runnable wakeup : idle_workers) {
+
+            wakeup.run();
+        }
+    }
+
+    public synchronized boolean hasFetches() {
+
+        return !_fetches.isEmpty();
+    }
+
+    public synchronized void register(ArrayList<Long> chunk_ids, HttpGet request) {
+
+        for (Long chunk_id : chunk_ids) {
+
+            ArrayList<Fetch> fetches = _fetches.get(chunk_id);
+
+            if (fetches == null) {
+
+                fetches = new ArrayList<>();
+
+                _fetches.put(chunk_id, fetches);
+            }
+
+            Fetch reserved = null;
+
+            for (Fetch f : fetches) {
+
+                if (f._request == null) {
+
+                    reserved = f;
+
+                    break;
+                }
+            }
+
+            if (reserved != null) {
+
+                reserved._request = request;
+
+                reserved._run_size = chunk_ids.size();
+
+            } else {
+
+                fetches.add(new Fetch(request, chunk_ids.size()));
+            }
+        }
+    }
+
+    public void unregister(ArrayList<Long> chunk_ids, HttpGet request) {
+
+        synchronized (this) {
+
+            for (Long chunk_id : chunk_ids) {
+
+                ArrayList<Fetch> fetches = _fetches.get(chunk_id);
+
+                if (fetches != null) {
+
+                    Iterator<Fetch> it = fetches.iterator();
+
+                    while (it.hasNext()) {
+
+                        if (it.next()._request == request) {
+
+                            it.remove();
+                        }
+                    }
+
+                    if (fetches.isEmpty()) {
+
+                        _fetches.remove(chunk_id);
+                    }
+                }
+            }
+        }
+
+        wakeIdle();
+    }
+
+    public synchronized void startFetch(long chunk_id, HttpGet request) {
+
+        ArrayList<Fetch> fetches = _fetches.get(chunk_id);
+
+        if (fetches != null) {
+
+            for (Fetch f : fetches) {
+
+                if (f._request == request) {
+
+                    f._started = System.nanoTime();
+                }
+            }
+
+            if (!_idle_workers.isEmpty()) {
+
+                scheduleWakeup();
+            }
+        }
+    }
+
+    public synchronized void chunkDone(long chunk_id, HttpGet winner) {
+
+        ArrayList<Fetch> fetches = _fetches.remove(chunk_id);
+
+        if (fetches != null) {
+
+            for (Fetch f : fetches) {
+
+                if (f._request == winner) {
+
+                    if (f._started > 0) {
+
+                        double nanos_per_byte = (System.nanoTime() - f._started) / (double) Chunk.calculateChunkSize(chunk_id, _file_size);
+
+                        _nanos_per_byte = _nanos_per_byte > 0 ? EWMA_ALPHA * nanos_per_byte + (1 - EWMA_ALPHA) * _nanos_per_byte : nanos_per_byte;
+                    }
+
+                } else if (f._request != null && !f._request.isAborted()) {
+
+                    getLogger(EndgameScheduler.class.getName()).log(Level.FINE, "Endgame: chunk [{0}] already downloaded, aborting duplicate request", chunk_id);
+
+                    f._request.abort();
+                }
+            }
+        }
+    }
+
+    public synchronized long nextStraggler(long frontier, boolean endgame) {
+
+        long now = System.nanoTime(), straggler = -1, straggler_age = 0;
+
+        _frontier = frontier;
+
+        _endgame = endgame;
+
+        for (Map.Entry<Long, ArrayList<Fetch>> entry : _fetches.entrySet()) {
+
+            if (!isDuplicable(entry.getKey(), entry.getValue())) {
+
+                continue;
+            }
+
+            for (Fetch f : entry.getValue()) {
+
+                if (f._started > 0) {
+
+                    long age = (now - f._started) / 1000000L;
+
+                    if (age > straggler_age && age >= getMinStragglerAge(entry.getKey())) {
+
+                        straggler = entry.getKey();
+
+                        straggler_age = age;
+                    }
+                }
+            }
+        }
+
+        if (straggler > 0) {
+
+            getLogger(EndgameScheduler.class.getName()).log(Level.FINE, "Endgame: duplicating straggler chunk [{0}] ({1} ms)", new Object[]{straggler, straggler_age});
+
+            _fetches.get(straggler).add(new Fetch(null, 1));
+        }
+
+        return straggler;
+    }
+
+    private boolean isDuplicable(long chunk_id, ArrayList<Fetch> fetches) {
+
+        if (fetches.size() >= MAX_CHUNK_COPIES || (!_endgame && (_nanos_per_byte == 0 || chunk_id > _frontier - STRAGGLER_LAG_CHUNKS))) {
+
+            return false;
+        }
+
+        for (Fetch f : fetches) {
+
+            //The winner aborts the loser: only a one chunk request can lose without throwing away other chunks
+            if (f._run_size > 1) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private long getMinStragglerAge(long chunk_id) {
+
+        return _endgame ? ENDGAME_MIN_AGE : Math.max(STRAGGLER_MIN_AGE, (long) (STRAGGLER_FACTOR * _nanos_per_byte * Chunk.calculateChunkSize(chunk_id, _file_size) / 1000000L));
+    }
+
+    private long nextStragglerDelay() {
+
+        long now = System.nanoTime(), delay = -1;
+
+        for (Map.Entry<Long, ArrayList<Fetch>> entry : _fetches.entrySet()) {
+
+            if (!isDuplicable(entry.getKey(), entry.getValue())) {
+
+                continue;
+            }
+
+            for (Fetch f : entry.getValue()) {
+
+                if (f._started > 0) {
+
+                    long wait = Math.max(0L, f._started + getMinStragglerAge(entry.getKey()) * 1000000L - now);
+
+                    if (delay == -1 || wait < delay) {
+
+                        delay = wait;
+                    }
+                }
+            }
+        }
+
+        return delay;
+    }
+
+    private static final class Fetch {
+
+        private HttpGet _request;
+        private int _run_size;
+        private long _started;
+
+        public Fetch(HttpGet request, int run_size) {
+            _request = request;
+            _run_size = run_size;
+            _started = 0L;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package megabasterd;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class FileMACVerifier {
+
+    public static final int MAX_SIM_VERIFICATIONS = 2;
+    public static final int CHUNKS_PER_TASK = 8;
+    public static final int PROGRESS_REFRESH = 250;
+    public static final Semaphore VERIFICATION_SEMAPHORE = new Semaphore(MAX_SIM_VERIFICATIONS, true);
+    private static final ThreadLocal<ByteBuffer> READ_BUFFERS = new ThreadLocal<>();
+
+    private final Download _download;
+    private final String _filename;
+    private final long _file_size;
+    private final byte[] _key;
+    private final int[] _iv;
+    private final int[][] _chunk_macs;
+    private final LongAdder _bytes_checked;
+    private final AtomicReference<Exception> _error;
+    private final ThreadLocal<ChunkMACEngine> _mac_engines;
+    private FileChannel _channel;
+
+    public FileMACVerifier(Download download, String filename, byte[] key, int[] iv) {
+        _download = download;
+        _filename = filename;
+        _file_size = download.getFile_size();
+        _key = key;
+        _iv = iv;
+        _chunk_macs = new int[(int) Chunk.calculateLastChunkId(_file_size)][];
+        _bytes_checked = new LongAdder();
+        _error = new AtomicReference<>();
+        _mac_engines = new ThreadLocal<>();
+    }
+
+    public int[][] getChunk_macs() {
+        return _chunk_macs;
+    }
+
+    public int[][] calculateChunkMACs() throws Exception {
+
+        try (RandomAccessFile file = new RandomAccessFile(_filename, "r")) {
+
+            _channel = file.getChannel();
+
+            ForkJoinTask<Void> task = TransferRuntime.getInstance().getCrypto_pool().submit(new ChunkRangeTask(1, _chunk_macs.length));
+
+            //Only this thread publishes progress, the pool threads just count
+            while (!task.isDone()) {
+
+                try {
+
+                    task.get(PROGRESS_REFRESH, TimeUnit.MILLISECONDS);
+
+                } catch (TimeoutException ex) {
+
+                    _download.setProgress(_bytes_checked.sum());
+                }
+            }
+
+            _download.setProgress(_bytes_checked.sum());
+        }
+
+        if (_error.get() != null) {
+            throw _error.get();
+        }
+
+        return _download.isExit() ? null : _chunk_macs;
+    }
+
+    public int[][] calculateMissingChunkMACs(int[][] chunk_macs) throws Exception {
+
+        for (int i = 0; i < _chunk_macs.length; i++) {
+
+            if (chunk_macs[i] != null) {
+
+                _chunk_macs[i] = chunk_macs[i];
+
+                _bytes_checked.add(Chunk.calculateChunkSize(i + 1, _file_size));
+            }
+        }
+
+        if (_bytes_checked.sum() == _file_size) {
+
+            _download.setProgress(_file_size);
+
+            return _chunk_macs;
+        }
+
+        return calculateChunkMACs();
+    }
+
+    public int[] calculateMetaMAC() throws Exception {
+
+        return calculateMetaMAC(calculateChunkMACs());
+    }
+
+    public int[] calculateMetaMAC(int[][] chunk_macs) throws Exception {
+
+        if (chunk_macs == null) {
+            return null;
+        }
+
+        ChunkMACEngine mac_engine = new ChunkMACEngine(_key, _iv);
+
+        for (int[] chunk_mac : chunk_macs) {
+            mac_engine.fold(chunk_mac);
+        }
+
+        return mac_engine.getMeta_mac();
+    }
+
+    private ChunkMACEngine getMACEngine() throws Exception {
+
+        ChunkMACEngine mac_engine = _mac_engines.get();
+
+        if (mac_engine == null) {
+
+            mac_engine = new ChunkMACEngine(_key, _iv);
+
+            _mac_engines.set(mac_engine);
+        }
+
+        return mac_engine;
+    }
+
+    private static ByteBuffer getReadBuffer() {
+
+        //A plain heap buffer per pool thread: leasing from ChunkBufferPool could park a ForkJoin thread waiting for budget
+        ByteBuffer read_buffer = READ_BUFFERS.get();
+
+        if (read_buffer == null) {
+
+            read_buffer = ByteBuffer.allocate(ChunkBufferPool.MAX_CHUNK_SIZE);
+
+            READ_BUFFERS.set(read_buffer);
+        }
+
+        return read_buffer;
+    }
+
+    private void calculateChunkMAC(long chunk_id) throws Exception {
+
+        long chunk_size = Chunk.calculateChunkSize(chunk_id, _file_size);
+
+        long position = Chunk.calculateChunkOffset(chunk_id);
+
+        ByteBuffer chunk_data = getReadBuffer();
+
+        chunk_data.clear();
+
+        chunk_data.limit((int) chunk_size);
+
+        while (chunk_data.hasRemaining() && _channel.read(chunk_data, position + chunk_data.position()) != -1) {
+        }
+
+        chunk_data.flip();
+
+        _chunk_macs[(int) chunk_id - 1] = getMACEngine().chunkMAC(chunk_data);
+
+        _bytes_checked.add(chunk_size);
+    }
+
+    private final class ChunkRangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long _first_id;
+        private final long _last_id;
+
+        public ChunkRangeTask(long first_id, long last_id) {
+            _first_id = first_id;
+            _last_id = last_id;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (_last_id - _first_id < CHUNKS_PER_TASK) {
+
+                for (long chunk_id = _first_id; chunk_id <= _last_id && !_download.isExit() && _error.get() == null; chunk_id++) {
+
+                    try {
+
+                        if (_chunk_macs[(int) chunk_id - 1] == null) {
+
+                            calculateChunkMAC(chunk_id);
+                        }
+
+                    } catch (Exception ex) {
+
+                        _error.compareAndSet(null, ex);
+                    }
+                }
+
+            } else {
+
+                long middle_id = _first_id + (_last_id - _first_id) / 2;
+
+                invokeAll(new ChunkRangeTask(_first_id, middle_id), new ChunkRangeTask(middle_id + 1, _last_id));
+            }
+        }
+    }
+}
@@ -1,185 +1,90 @@
 package megabasterd;
 
-import java.util.Iterator;
-import java.util.Map;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import static java.util.logging.Logger.getLogger;
 import javax.swing.JLabel;
 import static megabasterd.MiscTools.formatBytes;
 import static megabasterd.MiscTools.swingReflectionInvoke;
 
-public final class GlobalSpeedMeter implements Runnable, SecureSingleThreadNotifiable, SecureMultiThreadNotifiable {
-
-    public static final int SLEEP = 5000;
-    private final JLabel _speed_label;
-    private final ConcurrentHashMap<Thread, Boolean> _notified_threads;
-    private final ConcurrentLinkedQueue<SpeedMeter> _speedmeters;
-    private final ConcurrentHashMap<SpeedMeter, Long> _speedMap;
-    private final Object _secure_notify_lock;
-    private final Object _secure_notify_lock_multi;
-    private boolean _notified;
-
-    GlobalSpeedMeter(JLabel sp_label) {
-        _notified = false;
-        _secure_notify_lock = new Object();
-        _secure_notify_lock_multi = new Object();
-        _speed_label = sp_label;
-        _speedmeters = new ConcurrentLinkedQueue<>();
-        _speedMap = new ConcurrentHashMap<>();
-        _notified_threads = new ConcurrentHashMap<>();
+public final class GlobalSpeedMeter implements Runnable {
+
+    public static final int SLEEP = 1000;
+    private final JLabel _down_label;
+    private final JLabel _up_label;
+    private final Set<SpeedMeter> _down_meters;
+    private final Set<SpeedMeter> _up_meters;
+    private volatile long _down_speed;
+    private volatile long _up_speed;
+
+    GlobalSpeedMeter(JLabel down_label, JLabel up_label) {
+        _down_label = down_label;
+        _up_label = up_label;
+        _down_meters = Collections.newSetFromMap(new ConcurrentHashMap<SpeedMeter, Boolean>());
+        _up_meters = Collections.newSetFromMap(new ConcurrentHashMap<SpeedMeter, Boolean>());
+        _down_speed = 0;
+        _up_speed = 0;
+
+        swingReflectionInvoke("setText", new Object[]{_down_label, _up_label}, "------");
+        swingReflectionInvoke("setVisible", new Object[]{_down_label, _up_label}, true);
     }
 
-    public ConcurrentHashMap<SpeedMeter, Long> getSpeedMap() {
-        return _speedMap;
+    public long getDown_speed() {
+        return _down_speed;
     }
 
-    @Override
-    public void secureMultiWait() {
-
-        synchronized (_secure_notify_lock_multi) {
-
-            Thread current_thread = Thread.currentThread();
-
-            if (!_notified_threads.containsKey(current_thread)) {
-
-                _notified_threads.put(current_thread, false);
-            }
+    public long getUp_speed() {
+        return _up_speed;
+    }
 
-            while (!_notified_threads.get(current_thread)) {
+    public void attachSpeedMeter(SpeedMeter speed, boolean upload) {
 
-                try {
-                    _secure_notify_lock_multi.wait();
-                } catch (InterruptedException ex) {
-                    getLogger(StreamThrottlerSupervisor.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
+        speed.reset();
 
-            _notified_threads.put(current_thread, false);
-        }
+        (upload ? _up_meters : _down_meters).add(speed);
     }
 
-    @Override
-    public void secureMultiNotifyAll() {
-
-        synchronized (_secure_notify_lock_multi) {
-
-            for (Map.Entry<Thread, Boolean> entry : _notified_threads.entrySet()) {
+    public void detachSpeedMeter(SpeedMeter speed) {
 
-                entry.setValue(true);
-            }
+        _down_meters.remove(speed);
 
-            _secure_notify_lock_multi.notifyAll();
-        }
+        _up_meters.remove(speed);
     }
 
-    public void attachSpeedMeter(SpeedMeter speed) {
-        _speedmeters.add(speed);
-    }
+    private long sample(Set<SpeedMeter> meters, long now) {
 
-    public void detachSpeedMeter(SpeedMeter speed) {
+        long sp = 0;
 
-        if (_speedmeters.contains(speed)) {
-            _speedmeters.remove(speed);
-        }
+        for (SpeedMeter speed : meters) {
 
-        if (_speedMap.containsKey(speed)) {
-            _speedMap.remove(speed);
+            sp += speed.sample(now);
         }
 
-        secureNotify();
+        return sp;
     }
 
-    private void resetSpeedMap() {
-
-        for (SpeedMeter speedMeter : _speedmeters) {
+    private void updateLabel(JLabel label, long sp) {
 
-            _speedMap.put(speedMeter, -1L);
-        }
+        swingReflectionInvoke("setText", label, sp > 0 ? formatBytes(sp) + "/s" : "------");
     }
 
     @Override
     public void run() {
-        long sp;
-
-        swingReflectionInvoke("setText", _speed_label, "------");
-        swingReflectionInvoke("setVisible", _speed_label, true);
-
-        while (true) {
-
-            try {
-
-                Thread.sleep(SLEEP);
-
-                resetSpeedMap();
 
-                secureMultiNotifyAll();
+        long now = System.nanoTime(), down_speed = sample(_down_meters, now), up_speed = sample(_up_meters, now);
 
-                sp = 0;
+        if (down_speed != _down_speed) {
 
-                while (!this._speedMap.isEmpty()) {
-                    Iterator<Map.Entry<SpeedMeter, Long>> it = _speedMap.entrySet().iterator();
+            updateLabel(_down_label, down_speed);
 
-                    while (it.hasNext()) {
-
-                        Map.Entry<SpeedMeter, Long> entry = it.next();
-
-                        if (entry.getValue() != -1) {
-
-                            sp += entry.getValue();
-
-                            it.remove();
-                        }
-                    }
-
-                    if (!this._speedMap.isEmpty()) {
-
-                        this.secureWait();
-                    }
-                }
-
-                if (sp > 0) {
-
-                    swingReflectionInvoke("setText", _speed_label, formatBytes(sp) + "/s");
-
-                } else {
-
-                    swingReflectionInvoke("setText", _speed_label, "------");
-                }
-            } catch (InterruptedException ex) {
-                Logger.getLogger(GlobalSpeedMeter.class.getName()).log(Level.SEVERE, null, ex);
-            }
+            _down_speed = down_speed;
         }
 
-    }
+        if (up_speed != _up_speed) {
 
-    @Override
-    public void secureNotify() {
-        synchronized (_secure_notify_lock) {
-
-            _notified = true;
-
-            _secure_notify_lock.notify();
-        }
-    }
+            updateLabel(_up_label, up_speed);
 
-    @Override
-    public void secureWait() {
-
-        synchronized (_secure_notify_lock) {
-            while (!_notified) {
-
-                try {
-                    _secure_notify_lock.wait();
-                } catch (InterruptedException ex) {
-                    getLogger(SpeedMeter.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
-
-            _notified = false;
+            _up_speed = up_speed;
         }
     }
-
 }
@@ -0,0 +1,114 @@
+package megabasterd;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import static java.util.logging.Logger.getLogger;
+import static megabasterd.DBTools.selectIntSettingValueFromDB;
+import static megabasterd.DBTools.selectSettingValueFromDB;
+import static megabasterd.MainPanel.THREAD_POOL;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class HttpConnectionPool implements Runnable {
+
+    public static final int MAX_CONNECTIONS_DEFAULT = 256;
+    public static final int MAX_CONNECTIONS_PER_ROUTE_DEFAULT = 64;
+    public static final int CONNECT_TIMEOUT_DEFAULT = 30;
+    public static final int SOCKET_TIMEOUT_DEFAULT = 60;
+    public static final int SOCKET_BUFFER_SIZE_DEFAULT = 256 * 1024;
+    public static final boolean TCP_NODELAY_DEFAULT = true;
+    public static final int IDLE_CONNECTION_TIMEOUT = 30;
+    public static final int EVICTOR_SLEEP = 5;
+
+    private final PoolingHttpClientConnectionManager _connection_manager;
+    private final RequestConfig _request_config;
+
+    public static HttpConnectionPool getInstance() {
+
+        return LazyHolder.INSTANCE;
+    }
+
+    private HttpConnectionPool() {
+
+        int max_connections = selectIntSettingValueFromDB("http_max_connections", MAX_CONNECTIONS_DEFAULT);
+
+        int max_connections_per_route = selectIntSettingValueFromDB("http_max_connections_per_route", MAX_CONNECTIONS_PER_ROUTE_DEFAULT);
+
+        int connect_timeout = selectIntSettingValueFromDB("http_connect_timeout", CONNECT_TIMEOUT_DEFAULT);
+
+        int socket_timeout = selectIntSettingValueFromDB("http_socket_timeout", SOCKET_TIMEOUT_DEFAULT);
+
+        int socket_buffer_size = selectIntSettingValueFromDB("http_socket_buffer_size", SOCKET_BUFFER_SIZE_DEFAULT);
+
+        String tcp_nodelay = selectSettingValueFromDB("http_tcp_nodelay");
+
+        _connection_manager = new PoolingHttpClientConnectionManager(IDLE_CONNECTION_TIMEOUT * 2, TimeUnit.SECONDS);
+
+        _connection_manager.setMaxTotal(max_connections);
+
+        _connection_manager.setDefaultMaxPerRoute(max_connections_per_route);
+
+        _connection_manager.setValidateAfterInactivity(2000);
+
+        _connection_manager.setDefaultSocketConfig(SocketConfig.custom()
+                .setTcpNoDelay(tcp_nodelay != null ? tcp_nodelay.equals("yes") : TCP_NODELAY_DEFAULT)
+                .setSoKeepAlive(true)
+                .setSoTimeout(socket_timeout * 1000)
+                .setRcvBufSize(socket_buffer_size)
+                .setSndBufSize(socket_buffer_size)
+                .build());
+
+        _connection_manager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setBufferSize(MainPanel.THROTTLE_SLICE_SIZE)
+                .build());
+
+        _request_config = RequestConfig.custom()
+                .setConnectTimeout(connect_timeout * 1000)
+                .setConnectionRequestTimeout(connect_timeout * 1000)
+                .setSocketTimeout(socket_timeout * 1000)
+                .build();
+
+        THREAD_POOL.execute(this);
+    }
+
+    public PoolingHttpClientConnectionManager getConnection_manager() {
+        return _connection_manager;
+    }
+
+    public RequestConfig getRequest_config() {
+        return _request_config;
+    }
+
+    @Override
+    public void run() {
+
+        while (true) {
+
+            try {
+
+                Thread.sleep(EVICTOR_SLEEP * 1000);
+
+                _connection_manager.closeExpiredConnections();
+
+                _connection_manager.closeIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.SECONDS);
+
+            } catch (InterruptedException ex) {
+
+                getLogger(HttpConnectionPool.class.getName()).log(Level.SEVERE, null, ex);
+
+                return;
+            }
+        }
+    }
+
+    private final static class LazyHolder {
+
+        private static final HttpConnectionPool INSTANCE = new HttpConnectionPool();
+    }
+}
@@ -7,6 +7,7 @@ import com.sun.net.httpserver.HttpServer;
 import java.awt.Color;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -14,14 +15,16 @@ import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import static java.util.logging.Level.SEVERE;
 import static java.util.logging.Logger.getLogger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import javax.crypto.CipherInputStream;
+import javax.crypto.Cipher;
+import static megabasterd.DBTools.selectIntSettingValueFromDB;
 import static megabasterd.MainPanel.STREAMER_PORT;
 import static megabasterd.MainPanel.THREAD_POOL;
-import static megabasterd.MiscTools.checkMegaDownloadUrl;
 import static megabasterd.MiscTools.findFirstRegex;
 import static megabasterd.MiscTools.getWaitTimeExpBackOff;
 import static megabasterd.MiscTools.swingReflectionInvoke;
@@ -37,13 +40,17 @@ public final class KissVideoStreamServer implements HttpHandler, SecureSingleThr
     public static final int WORKER_STATUS_STREAM = 0x03;
     public static final int WORKER_STATUS_RETRY = 0x04;
     public static final int WORKER_STATUS_EXIT = 0x05;
+    public static final int STREAMER_WEIGHT = 4;
+    public static final int STREAMER_MIN_SPEED_DEFAULT = 1024;
 
     private final MainPanel _main_panel;
     private final ConcurrentHashMap<String, HashMap<String, Object>> _link_cache;
     private final ConcurrentHashMap<Thread, Integer> _working_threads;
     private final ContentType _ctype;
     private boolean _notified;
-    private final Object _secure_notify_lock;
+    private final ReentrantLock _secure_notify_lock;
+    private final Condition _secure_notify_condition;
+    private final BandwidthNode _bandwidth_node;
 
     public KissVideoStreamServer(MainPanel panel) {
         _main_panel = panel;
@@ -51,13 +58,19 @@ public final class KissVideoStreamServer implements HttpHandler, SecureSingleThr
         _working_threads = new ConcurrentHashMap();
         _ctype = new ContentType();
         _notified = false;
-        _secure_notify_lock = new Object();
+        _secure_notify_lock = new ReentrantLock();
+        _secure_notify_condition = _secure_notify_lock.newCondition();
+        _bandwidth_node = panel.getStream_supervisor().newInputNode(0, selectIntSettingValueFromDB("streamer_min_speed", STREAMER_MIN_SPEED_DEFAULT) * 1024L, STREAMER_WEIGHT);
     }
 
     public MainPanel getMain_panel() {
         return _main_panel;
     }
 
+    public BandwidthNode getBandwidth_node() {
+        return _bandwidth_node;
+    }
+
     public ConcurrentHashMap<String, HashMap<String, Object>> getLink_cache() {
         return _link_cache;
     }
@@ -72,28 +85,42 @@ public final class KissVideoStreamServer implements HttpHandler, SecureSingleThr
 
     @Override
     public void secureNotify() {
-        synchronized (_secure_notify_lock) {
+
+        _secure_notify_lock.lock();
+
+        try {
 
             _notified = true;
 
-            _secure_notify_lock.notify();
+            _secure_notify_condition.signal();
+
+        } finally {
+
+            _secure_notify_lock.unlock();
         }
     }
 
     @Override
     public void secureWait() {
 
-        synchronized (_secure_notify_lock) {
+        _secure_notify_lock.lock();
+
+        try {
+
             while (!_notified) {
 
                 try {
-                    _secure_notify_lock.wait();
+                    _secure_notify_condition.await();
                 } catch (InterruptedException ex) {
                     getLogger(Download.class.getName()).log(SEVERE, null, ex);
                 }
             }
 
             _notified = false;
+
+        } finally {
+
+            _secure_notify_lock.unlock();
         }
     }
 
@@ -106,7 +133,7 @@ public final class KissVideoStreamServer implements HttpHandler, SecureSingleThr
 
         httpserver.createContext(context, this);
 
-        httpserver.setExecutor(THREAD_POOL);
+        httpserver.setExecutor(TransferRuntime.getInstance().isVirtual_threads() ? TransferRuntime.getInstance().getWorker_executor() : THREAD_POOL);
 
         httpserver.start();
     }
@@ -307,12 +334,12 @@ public final class KissVideoStreamServer implements HttpHandler, SecureSingleThr
 
         OutputStream os;
 
-        CipherInputStream cis;
-
         String httpmethod = xchg.getRequestMethod();
 
         HttpGet httpget;
 
+        int reserved_bytes = 0;
+
         try (CloseableHttpClient httpclient = MiscTools.getApacheKissHttpClient()) {
 
             Headers reqheaders = xchg.getRequestHeaders();
@@ -349,7 +376,6 @@ public final class KissVideoStreamServer implements HttpHandler, SecureSingleThr
 
                 file_info.put("noexpiretoken", finfo.length >= 5 ? finfo[4] : null);
 
-                file_info.put("url", null);
             }
 
             String file_name = (String) file_info.get("file_name");
@@ -358,9 +384,9 @@ public final class KissVideoStreamServer implements HttpHandler, SecureSingleThr
 
             String file_key = (String) file_info.get("file_key");
 
-            String pass_hash = (String) file_info.get("pass_hash");
+            final String pass_hash = (String) file_info.get("pass_hash");
 
-            String noexpire_token = (String) file_info.get("noexpiretoken");
+            final String noexpire_token = (String) file_info.get("noexpiretoken");
 
             String file_ext = file_name.substring(file_name.lastIndexOf('.') + 1).toLowerCase();
 
@@ -392,29 +418,32 @@ public final class KissVideoStreamServer implements HttpHandler, SecureSingleThr
 
                 resheaders.add("Connection", "close");
 
-                byte[] buffer = new byte[16 * 1024];
+                byte[] buffer = new byte[ChunkBufferPool.SIZE_CLASS];
 
-                int reads;
+                ChunkBufferPool.getInstance().reserve(buffer.length);
 
-                String temp_url;
+                reserved_bytes = buffer.length;
 
-                if (file_info.get("url") != null) {
+                int reads;
 
-                    temp_url = (String) file_info.get("url");
+                final String final_link = link;
 
-                    if (!checkMegaDownloadUrl(temp_url)) {
+                DownloadUrlLeaseManager.UrlFetcher url_fetcher = new DownloadUrlLeaseManager.UrlFetcher() {
+                    @Override
+                    public String fetchUrl() throws IOException {
 
-                        temp_url = getMegaFileDownloadUrl(link, pass_hash, noexpire_token);
+                        try {
 
-                        file_info.put("url", temp_url);
-                    }
+                            return getMegaFileDownloadUrl(final_link, pass_hash, noexpire_token);
 
-                } else {
+                        } catch (InterruptedException ex) {
 
-                    temp_url = getMegaFileDownloadUrl(link, pass_hash, noexpire_token);
+                            throw new InterruptedIOException(ex.getMessage());
+                        }
+                    }
+                };
 
-                    file_info.put("url", temp_url);
-                }
+                String temp_url = DownloadUrlLeaseManager.getInstance().getUrl(link, url_fetcher);
 
                 getLink_cache().put(link, file_info);
 
@@ -471,23 +500,49 @@ public final class KissVideoStreamServer implements HttpHandler, SecureSingleThr
 
                 httpget = new HttpGet(url.toURI());
 
-                try (CloseableHttpResponse httpresponse = httpclient.execute(httpget)) {
+                CloseableHttpResponse first_response = httpclient.execute(httpget);
 
-                    is = httpresponse.getEntity().getContent();
+                if (DownloadUrlLeaseManager.isUrlError(first_response.getStatusLine().getStatusCode())) {
 
-                    byte[] iv = CryptTools.initMEGALinkKeyIV(file_key);
+                    first_response.close();
 
-                    cis = new CipherInputStream(is, CryptTools.genDecrypter("AES", "AES/CTR/NoPadding", CryptTools.initMEGALinkKey(file_key), (header_range != null && (ranges[0] - sync_bytes) > 0) ? CryptTools.forwardMEGALinkKeyIV(iv, ranges[0] - sync_bytes) : iv));
+                    updateStatus(WORKER_STATUS_RETRY);
 
-                    os = xchg.getResponseBody();
+                    temp_url = DownloadUrlLeaseManager.getInstance().renewUrl(link, temp_url, url_fetcher);
+
+                    httpget = new HttpGet(new URL(header_range != null ? cookRangeUrl(temp_url, ranges, sync_bytes) : temp_url).toURI());
+
+                    updateStatus(WORKER_STATUS_CONNECT);
+
+                    first_response = httpclient.execute(httpget);
+                }
+
+                try (CloseableHttpResponse httpresponse = first_response) {
+
+                    is = new ThrottledInputStream(httpresponse.getEntity().getContent(), _bandwidth_node, _main_panel.getStream_supervisor().getSlice_size());
+
+                    ChunkCrypter crypter = new ChunkCrypter(Cipher.DECRYPT_MODE, CryptTools.initMEGALinkKey(file_key), CryptTools.initMEGALinkKeyIV(file_key));
+
+                    crypter.reset(header_range != null ? ranges[0] - sync_bytes : 0);
 
-                    cis.skip(sync_bytes);
+                    os = xchg.getResponseBody();
 
                     updateStatus(WORKER_STATUS_STREAM);
 
-                    while ((reads = cis.read(buffer)) != -1) {
+                    while ((reads = is.read(buffer)) != -1) {
+
+                        crypter.update(buffer, 0, reads);
+
+                        if (sync_bytes < reads) {
+
+                            os.write(buffer, sync_bytes, reads - sync_bytes);
+
+                            sync_bytes = 0;
 
-                        os.write(buffer, 0, reads);
+                        } else {
+
+                            sync_bytes -= reads;
+                        }
                     }
                 }
             }
@@ -496,8 +551,11 @@ public final class KissVideoStreamServer implements HttpHandler, SecureSingleThr
         } finally {
             xchg.close();
 
+            if (reserved_bytes > 0) {
+                ChunkBufferPool.getInstance().unreserve(reserved_bytes);
+            }
+
             updateStatus(WORKER_STATUS_EXIT);
         }
     }
-
 }
@@ -27,6 +27,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.concurrent.ExecutorService;
 import static java.util.concurrent.Executors.newCachedThreadPool;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
@@ -97,12 +98,13 @@ public final class MainPanel {
     }
 
     private volatile MainPanelView _view = null; //lazy init
-    private final GlobalSpeedMeter _global_dl_speed, _global_up_speed;
+    private final GlobalSpeedMeter _global_speed_meter;
+    private final ConnectionBudget _connection_budget;
     private final DownloadManager _download_manager;
     private final UploadManager _upload_manager;
     private final StreamThrottlerSupervisor _stream_supervisor;
-    private int _max_dl, _max_ul, _default_slots_down, _default_slots_up, _max_dl_speed, _max_up_speed;
-    private boolean _use_slots_down, _use_slots_up, _limit_download_speed, _limit_upload_speed;
+    private int _max_dl, _max_ul, _default_slots_down, _default_slots_up, _max_dl_speed, _max_up_speed, _max_connections_down;
+    private boolean _use_slots_down, _use_slots_up, _limit_download_speed, _limit_upload_speed, _fair_share, _async_http_down;
     private String _default_download_path;
     private HashMap<String, Object> _mega_accounts;
     private HashMap<String, Object> _elc_accounts;
@@ -160,18 +162,26 @@ public final class MainPanel {
 
         loadUserSettings();
 
-        THREAD_POOL.execute((_global_dl_speed = new GlobalSpeedMeter(getView().getGlobal_speed_down_label())));
+        _global_speed_meter = new GlobalSpeedMeter(getView().getGlobal_speed_down_label(), getView().getGlobal_speed_up_label());
 
-        THREAD_POOL.execute((_global_up_speed = new GlobalSpeedMeter(getView().getGlobal_speed_up_label())));
+        TransferRuntime.getInstance().getScheduler().scheduleWithFixedDelay(_global_speed_meter, GlobalSpeedMeter.SLEEP, GlobalSpeedMeter.SLEEP, TimeUnit.MILLISECONDS);
+
+        _connection_budget = new ConnectionBudget(this);
+
+        TransferRuntime.getInstance().getScheduler().scheduleWithFixedDelay(_connection_budget, ConnectionBudget.SLEEP, ConnectionBudget.SLEEP, TimeUnit.SECONDS);
 
         THREAD_POOL.execute((_download_manager = new DownloadManager(this)));
 
         THREAD_POOL.execute((_upload_manager = new UploadManager(this)));
 
-        THREAD_POOL.execute((_stream_supervisor = new StreamThrottlerSupervisor(_limit_download_speed ? _max_dl_speed * 1024 : 0, _limit_upload_speed ? _max_up_speed * 1024 : 0, THROTTLE_SLICE_SIZE)));
+        _stream_supervisor = new StreamThrottlerSupervisor(_limit_download_speed ? _max_dl_speed * 1024 : 0, _limit_upload_speed ? _max_up_speed * 1024 : 0, THROTTLE_SLICE_SIZE);
+
+        _stream_supervisor.setFair_share(_fair_share);
 
         THREAD_POOL.execute((_clipboardspy = new ClipboardSpy()));
 
+        THREAD_POOL.execute(new TransferMemoryMeter(getView().getMemory_status_label()));
+
         swingReflectionInvoke("setForeground", getView().getGlobal_speed_down_label(), _limit_download_speed ? new Color(255, 0, 0) : new Color(0, 128, 255));
 
         swingReflectionInvoke("setForeground", getView().getGlobal_speed_up_label(), _limit_upload_speed ? new Color(255, 0, 0) : new Color(0, 128, 255));
@@ -289,12 +299,12 @@ public final class MainPanel {
         return result;
     }
 
-    public GlobalSpeedMeter getGlobal_dl_speed() {
-        return _global_dl_speed;
+    public GlobalSpeedMeter getGlobal_speed_meter() {
+        return _global_speed_meter;
     }
 
-    public GlobalSpeedMeter getGlobal_up_speed() {
-        return _global_up_speed;
+    public ConnectionBudget getConnection_budget() {
+        return _connection_budget;
     }
 
     public DownloadManager getDownload_manager() {
@@ -369,6 +379,18 @@ public final class MainPanel {
         return _limit_download_speed;
     }
 
+    public boolean isFair_share() {
+        return _fair_share;
+    }
+
+    public boolean isAsync_http_down() {
+        return _async_http_down;
+    }
+
+    public int getMax_connections_down() {
+        return _max_connections_down;
+    }
+
     public boolean isLimit_upload_speed() {
         return _limit_upload_speed;
     }
@@ -450,6 +472,36 @@ public final class MainPanel {
             _limit_upload_speed = LIMIT_TRANSFERENCE_SPEED_DEFAULT;
         }
 
+        String fair_share = selectSettingValueFromDB("fair_share_per_transfer");
+
+        if (fair_share != null) {
+
+            _fair_share = fair_share.equals("yes");
+
+        } else {
+
+            _fair_share = StreamThrottlerSupervisor.FAIR_SHARE_DEFAULT;
+        }
+
+        String async_http_down = selectSettingValueFromDB("async_http_down");
+
+        if (async_http_down != null) {
+
+            _async_http_down = async_http_down.equals("yes");
+
+        } else {
+
+            _async_http_down = Download.ASYNC_HTTP_DEFAULT;
+        }
+
+        String max_connections_down = selectSettingValueFromDB("max_connections_down");
+
+        if (max_connections_down != null) {
+            _max_connections_down = parseInt(max_connections_down);
+        } else {
+            _max_connections_down = ConnectionBudget.CONNECTIONS_DEFAULT;
+        }
+
         String max_download_speed = selectSettingValueFromDB("max_download_speed");
 
         if (max_download_speed != null) {
@@ -45,6 +45,10 @@ public final class MainPanelView extends javax.swing.JFrame {
         return kiss_server_status;
     }
 
+    public JLabel getMemory_status_label() {
+        return memory_status_label;
+    }
+
     public JMenuItem getClean_all_down_menu() {
         return clean_all_down_menu;
     }
@@ -138,6 +142,7 @@ public final class MainPanelView extends javax.swing.JFrame {
                 updateFont(global_speed_down_label, FONT_DEFAULT, BOLD);
                 updateFont(global_speed_up_label, FONT_DEFAULT, BOLD);
                 updateFont(kiss_server_status, FONT_DEFAULT, BOLD);
+                updateFont(memory_status_label, FONT_DEFAULT, BOLD);
                 updateFont(status_down_label, FONT_DEFAULT, BOLD);
                 updateFont(status_up_label, FONT_DEFAULT, BOLD);
                 updateFont(close_all_finished_down_button, FONT_DEFAULT, BOLD);
@@ -171,6 +176,7 @@ public final class MainPanelView extends javax.swing.JFrame {
 
         logo_label = new javax.swing.JLabel();
         kiss_server_status = new javax.swing.JLabel();
+        memory_status_label = new javax.swing.JLabel();
         jTabbedPane1 = new javax.swing.JTabbedPane();
         downloads_panel = new javax.swing.JPanel();
         global_speed_down_label = new javax.swing.JLabel();
@@ -210,6 +216,10 @@ public final class MainPanelView extends javax.swing.JFrame {
         kiss_server_status.setFont(new java.awt.Font("Dialog", 1, 14)); // NOI18N
         kiss_server_status.setDoubleBuffered(true);
 
+        memory_status_label.setFont(new java.awt.Font("Dialog", 1, 14)); // NOI18N
+        memory_status_label.setToolTipText("Transfer memory in use");
+        memory_status_label.setDoubleBuffered(true);
+
         jTabbedPane1.setDoubleBuffered(true);
         jTabbedPane1.setFont(new java.awt.Font("Dialog", 1, 22)); // NOI18N
 
@@ -454,6 +464,8 @@ public final class MainPanelView extends javax.swing.JFrame {
                     .addGroup(layout.createSequentialGroup()
                         .addComponent(kiss_server_status, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                        .addComponent(memory_status_label)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                         .addComponent(logo_label)))
                 .addContainerGap())
         );
@@ -465,7 +477,8 @@ public final class MainPanelView extends javax.swing.JFrame {
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING)
                     .addComponent(logo_label)
-                    .addComponent(kiss_server_status, javax.swing.GroupLayout.PREFERRED_SIZE, 18, javax.swing.GroupLayout.PREFERRED_SIZE))
+                    .addComponent(kiss_server_status, javax.swing.GroupLayout.PREFERRED_SIZE, 18, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(memory_status_label, javax.swing.GroupLayout.PREFERRED_SIZE, 18, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addGap(2, 2, 2))
         );
 
@@ -677,6 +690,8 @@ public final class MainPanelView extends javax.swing.JFrame {
 
             }
 
+            _main_panel.getStream_supervisor().setFair_share(_main_panel.isFair_share());
+
             _main_panel.getDownload_manager().setMax_running_trans(_main_panel.getMax_dl());
 
             _main_panel.getUpload_manager().setMax_running_trans(_main_panel.getMax_ul());
@@ -937,6 +952,7 @@ public final class MainPanelView extends javax.swing.JFrame {
     private javax.swing.JLabel kiss_server_status;
     private javax.swing.JLabel logo_label;
     private javax.swing.JMenuBar main_menubar;
+    private javax.swing.JLabel memory_status_label;
     private javax.swing.JMenuItem new_download_menu;
     private javax.swing.JMenuItem new_stream_menu;
     private javax.swing.JMenuItem new_upload_menu;
@@ -1017,7 +1017,10 @@ public final class MiscTools {
 
     public static CloseableHttpClient getApacheKissHttpClient() {
 
-        HttpClientBuilder builder = _getApacheKissHttpClientBuilder();
+        HttpClientBuilder builder = _getApacheKissHttpClientBuilder()
+                .setConnectionManager(HttpConnectionPool.getInstance().getConnection_manager())
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(HttpConnectionPool.getInstance().getRequest_config());
 
         if (MainPanel.isUse_proxy() && MainPanel.getProxy_host() != null) {
 
@@ -1,74 +1,72 @@
 package megabasterd;
 
-import static java.util.logging.Level.SEVERE;
-import static java.util.logging.Logger.getLogger;
-
-public final class ProgressMeter implements Runnable, SecureSingleThreadNotifiable {
-
-    private final Transference _transference;
-    private volatile boolean _exit;
-    private final Object _secure_notify_lock;
-    private boolean _notified;
-    private long _progress;
-
-    ProgressMeter(Transference transference) {
-        _notified = false;
-        _secure_notify_lock = new Object();
-        _transference = transference;
-        _progress = transference.getProgress();
-        _exit = false;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public final class ProgressMeter implements Runnable {
+
+    public static final int SLEEP = 250;
+
+    private final ConcurrentHashMap<Transference, Long> _transferences;
+
+    public static ProgressMeter getInstance() {
+
+        return LazyHolder.INSTANCE;
+    }
+
+    private ProgressMeter() {
+
+        _transferences = new ConcurrentHashMap<>();
+
+        TransferRuntime.getInstance().getScheduler().scheduleWithFixedDelay(this, SLEEP, SLEEP, TimeUnit.MILLISECONDS);
     }
 
-    public void setExit(boolean value) {
-        _exit = value;
+    public void attach(Transference transference) {
+
+        _transferences.put(transference, transference.getProgress() - transference.getPartialProgress().sum());
     }
 
-    @Override
-    public void secureNotify() {
-        synchronized (_secure_notify_lock) {
+    public synchronized void detach(Transference transference) {
+
+        Long base = _transferences.remove(transference);
 
-            _notified = true;
+        if (base != null) {
 
-            _secure_notify_lock.notify();
+            update(transference, base);
         }
     }
 
-    @Override
-    public void secureWait() {
+    private synchronized void update(Transference transference) {
 
-        synchronized (_secure_notify_lock) {
-            while (!_notified) {
+        Long base = _transferences.get(transference);
 
-                try {
-                    _secure_notify_lock.wait();
-                } catch (InterruptedException ex) {
-                    _exit = true;
-                    getLogger(ProgressMeter.class.getName()).log(SEVERE, null, ex);
-                }
-            }
+        if (base != null) {
 
-            _notified = false;
+            update(transference, base);
         }
     }
 
-    @Override
-    public void run() {
-        System.out.println("ProgressMeter hello!");
-
-        while (!_exit || !_transference.getPartialProgress().isEmpty()) {
-            Integer reads;
+    private void update(Transference transference, long base) {
 
-            while ((reads = _transference.getPartialProgress().poll()) != null) {
-                _progress += reads;
-            }
+        long progress = base + transference.getPartialProgress().sum();
 
-            _transference.setProgress(_progress);
+        if (progress != transference.getProgress()) {
 
-            if (!_exit) {
-                secureWait();
-            }
+            transference.setProgress(progress);
         }
+    }
+
+    @Override
+    public void run() {
+
+        for (Transference transference : _transferences.keySet()) {
 
+            update(transference);
+        }
     }
 
+    private static class LazyHolder {
+
+        private static final ProgressMeter INSTANCE = new ProgressMeter();
+    }
 }
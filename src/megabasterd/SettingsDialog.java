@@ -88,7 +88,9 @@ public final class SettingsDialog extends javax.swing.JDialog {
                 updateFont(max_downloads_spinner, FONT_DEFAULT, Font.PLAIN);
                 updateFont(max_uploads_spinner, FONT_DEFAULT, Font.PLAIN);
                 updateFont(verify_file_down_checkbox, FONT_DEFAULT, Font.PLAIN);
+                updateFont(verify_file_disk_checkbox, FONT_DEFAULT, Font.PLAIN);
                 updateFont(multi_slot_down_checkbox, FONT_DEFAULT, Font.PLAIN);
+                updateFont(auto_slots_down_checkbox, FONT_DEFAULT, Font.PLAIN);
                 updateFont(multi_slot_up_checkbox, FONT_DEFAULT, Font.PLAIN);
                 updateFont(jTabbedPane1, FONT_DEFAULT, Font.PLAIN);
                 updateFont(status, FONT_DEFAULT, Font.BOLD);
@@ -116,6 +118,34 @@ public final class SettingsDialog extends javax.swing.JDialog {
                 updateFont(proxy_pass_label, FONT_DEFAULT, Font.PLAIN);
                 updateFont(use_proxy_checkbox, FONT_DEFAULT, Font.PLAIN);
                 updateFont(proxy_warning_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(fair_share_checkbox, FONT_DEFAULT, Font.PLAIN);
+                updateFont(virtual_threads_checkbox, FONT_DEFAULT, Font.PLAIN);
+                updateFont(async_http_checkbox, FONT_DEFAULT, Font.PLAIN);
+                updateFont(max_connections_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(max_connections_spinner, FONT_DEFAULT, Font.PLAIN);
+                updateFont(tuning_warning_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_max_connections_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_max_connections_spinner, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_max_connections_per_route_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_max_connections_per_route_spinner, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_connect_timeout_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_connect_timeout_spinner, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_socket_timeout_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_socket_timeout_spinner, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_socket_buffer_size_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_socket_buffer_size_spinner, FONT_DEFAULT, Font.PLAIN);
+                updateFont(http_tcp_nodelay_checkbox, FONT_DEFAULT, Font.PLAIN);
+                updateFont(adaptive_chunk_size_checkbox, FONT_DEFAULT, Font.PLAIN);
+                updateFont(max_chunk_range_size_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(max_chunk_range_size_spinner, FONT_DEFAULT, Font.PLAIN);
+                updateFont(watchdog_min_speed_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(watchdog_min_speed_spinner, FONT_DEFAULT, Font.PLAIN);
+                updateFont(watchdog_first_byte_timeout_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(watchdog_first_byte_timeout_spinner, FONT_DEFAULT, Font.PLAIN);
+                updateFont(max_transfer_memory_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(max_transfer_memory_spinner, FONT_DEFAULT, Font.PLAIN);
+                updateFont(streamer_min_speed_label, FONT_DEFAULT, Font.PLAIN);
+                updateFont(streamer_min_speed_spinner, FONT_DEFAULT, Font.PLAIN);
                 updateFont(rec_upload_slots_label, FONT_DEFAULT, Font.PLAIN);
                 updateFont(rec_download_slots_label, FONT_DEFAULT, Font.PLAIN);
             }
@@ -241,6 +271,87 @@ public final class SettingsDialog extends javax.swing.JDialog {
 
         swingReflectionInvoke("setEditable", ((JSpinner.DefaultEditor) max_up_speed_spinner.getEditor()).getTextField(), true);
 
+        boolean fair_share = StreamThrottlerSupervisor.FAIR_SHARE_DEFAULT;
+
+        String fair_share_val = DBTools.selectSettingValueFromDB("fair_share_per_transfer");
+
+        if (fair_share_val != null) {
+            fair_share = fair_share_val.equals("yes");
+        }
+
+        fair_share_checkbox.setSelected(fair_share);
+
+        boolean virtual_threads = TransferRuntime.VIRTUAL_THREADS_DEFAULT;
+
+        String virtual_threads_val = DBTools.selectSettingValueFromDB("use_virtual_threads");
+
+        if (virtual_threads_val != null) {
+            virtual_threads = virtual_threads_val.equals("yes");
+        }
+
+        virtual_threads_checkbox.setSelected(virtual_threads);
+
+        boolean async_http = Download.ASYNC_HTTP_DEFAULT;
+
+        String async_http_val = DBTools.selectSettingValueFromDB("async_http_down");
+
+        if (async_http_val != null) {
+            async_http = async_http_val.equals("yes");
+        }
+
+        async_http_checkbox.setSelected(async_http);
+
+        String max_connections_val = DBTools.selectSettingValueFromDB("max_connections_down");
+
+        int max_connections = ConnectionBudget.CONNECTIONS_DEFAULT;
+
+        if (max_connections_val != null) {
+            max_connections = Integer.parseInt(max_connections_val);
+        }
+
+        swingReflectionInvokeAndWait("setModel", max_connections_spinner, new SpinnerNumberModel(max_connections, ConnectionBudget.MIN_CONNECTIONS, ConnectionBudget.MAX_CONNECTIONS, 1));
+        swingReflectionInvoke("setEditable", ((JSpinner.DefaultEditor) max_connections_spinner.getEditor()).getTextField(), false);
+
+        setupTuningSpinner(http_max_connections_spinner, DBTools.selectIntSettingValueFromDB("http_max_connections", HttpConnectionPool.MAX_CONNECTIONS_DEFAULT), 1, 4096, 1);
+
+        setupTuningSpinner(http_max_connections_per_route_spinner, DBTools.selectIntSettingValueFromDB("http_max_connections_per_route", HttpConnectionPool.MAX_CONNECTIONS_PER_ROUTE_DEFAULT), 1, 4096, 1);
+
+        setupTuningSpinner(http_connect_timeout_spinner, DBTools.selectIntSettingValueFromDB("http_connect_timeout", HttpConnectionPool.CONNECT_TIMEOUT_DEFAULT), 1, 600, 1);
+
+        setupTuningSpinner(http_socket_timeout_spinner, DBTools.selectIntSettingValueFromDB("http_socket_timeout", HttpConnectionPool.SOCKET_TIMEOUT_DEFAULT), 1, 600, 1);
+
+        setupTuningSpinner(http_socket_buffer_size_spinner, DBTools.selectIntSettingValueFromDB("http_socket_buffer_size", HttpConnectionPool.SOCKET_BUFFER_SIZE_DEFAULT) / 1024, 8, 16384, 8);
+
+        boolean tcp_nodelay = HttpConnectionPool.TCP_NODELAY_DEFAULT;
+
+        String tcp_nodelay_val = DBTools.selectSettingValueFromDB("http_tcp_nodelay");
+
+        if (tcp_nodelay_val != null) {
+            tcp_nodelay = tcp_nodelay_val.equals("yes");
+        }
+
+        http_tcp_nodelay_checkbox.setSelected(tcp_nodelay);
+
+        boolean adaptive_chunk_size = ChunkRangePlanner.ADAPTIVE_CHUNK_SIZE_DEFAULT;
+
+        String adaptive_chunk_size_val = DBTools.selectSettingValueFromDB("adaptive_chunk_size");
+
+        if (adaptive_chunk_size_val != null) {
+            adaptive_chunk_size = adaptive_chunk_size_val.equals("yes");
+        }
+
+        adaptive_chunk_size_checkbox.setSelected(adaptive_chunk_size);
+
+        setupTuningSpinner(max_chunk_range_size_spinner, DBTools.selectIntSettingValueFromDB("max_chunk_range_size", ChunkRangePlanner.MAX_RANGE_SIZE_MB_DEFAULT), 1, ChunkRangePlanner.MAX_RANGE_SIZE_MB_LIMIT, 1);
+
+        setupTuningSpinner(watchdog_min_speed_spinner, DBTools.selectIntSettingValueFromDB("watchdog_min_speed", TransferWatchdog.MIN_SPEED_DEFAULT), 0, Integer.MAX_VALUE, 1);
+
+        setupTuningSpinner(watchdog_first_byte_timeout_spinner, DBTools.selectIntSettingValueFromDB("watchdog_first_byte_timeout", TransferWatchdog.FIRST_BYTE_TIMEOUT_DEFAULT), 1, 600, 1);
+
+        setupTuningSpinner(max_transfer_memory_spinner, DBTools.selectIntSettingValueFromDB("max_transfer_memory", ChunkBufferPool.TRANSFER_MEMORY_DEFAULT), ChunkBufferPool.MIN_TRANSFER_MEMORY, 65536, 16);
+
+        setupTuningSpinner(streamer_min_speed_spinner, DBTools.selectIntSettingValueFromDB("streamer_min_speed", KissVideoStreamServer.STREAMER_MIN_SPEED_DEFAULT), 0, Integer.MAX_VALUE, 64);
+
         boolean cbc_mac = Download.VERIFY_CBC_MAC_DEFAULT;
 
         String verify_file = DBTools.selectSettingValueFromDB("verify_down_file");
@@ -251,6 +362,18 @@ public final class SettingsDialog extends javax.swing.JDialog {
 
         verify_file_down_checkbox.setSelected(cbc_mac);
 
+        boolean verify_on_disk = Download.VERIFY_ON_DISK_DEFAULT;
+
+        String verify_file_disk = DBTools.selectSettingValueFromDB("verify_down_file_disk");
+
+        if (verify_file_disk != null) {
+            verify_on_disk = verify_file_disk.equals("yes");
+        }
+
+        verify_file_disk_checkbox.setSelected(verify_on_disk);
+
+        verify_file_disk_checkbox.setEnabled(cbc_mac);
+
         boolean use_slots = Download.USE_SLOTS_DEFAULT;
 
         String use_slots_val = DBTools.selectSettingValueFromDB("use_slots_down");
@@ -265,11 +388,23 @@ public final class SettingsDialog extends javax.swing.JDialog {
 
             swingReflectionInvoke("setEnabled", default_slots_down_label, false);
             swingReflectionInvoke("setEnabled", default_slots_down_spinner, false);
+            swingReflectionInvoke("setEnabled", auto_slots_down_checkbox, false);
         } else {
             swingReflectionInvoke("setEnabled", default_slots_down_label, true);
             swingReflectionInvoke("setEnabled", default_slots_down_spinner, true);
+            swingReflectionInvoke("setEnabled", auto_slots_down_checkbox, true);
+        }
+
+        boolean auto_slots = Download.AUTO_SLOTS_DEFAULT;
+
+        String auto_slots_val = DBTools.selectSettingValueFromDB("auto_slots_down");
+
+        if (auto_slots_val != null) {
+            auto_slots = auto_slots_val.equals("yes");
         }
 
+        auto_slots_down_checkbox.setSelected(auto_slots);
+
         use_slots = Upload.USE_SLOTS_DEFAULT;
 
         use_slots_val = DBTools.selectSettingValueFromDB("use_slots_up");
@@ -446,6 +581,22 @@ public final class SettingsDialog extends javax.swing.JDialog {
 
     }
 
+    private void setupTuningSpinner(JSpinner spinner, int value, int min, int max, int step) {
+
+        swingReflectionInvokeAndWait("setModel", spinner, new SpinnerNumberModel(Math.max(min, Math.min(max, value)), min, max, step));
+
+        swingReflectionInvoke("setEditable", ((JSpinner.DefaultEditor) spinner.getEditor()).getTextField(), true);
+    }
+
+    private boolean updateTuningSetting(String key, String value, String default_value) throws SQLException {
+
+        String old_value = DBTools.selectSettingValueFromDB(key);
+
+        insertSettingValueInDB(key, value);
+
+        return !value.equals(old_value != null ? old_value : default_value);
+    }
+
     /**
      * This method is called from within the constructor to initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is always
@@ -463,10 +614,12 @@ public final class SettingsDialog extends javax.swing.JDialog {
         max_downloads_label = new javax.swing.JLabel();
         max_downloads_spinner = new javax.swing.JSpinner();
         verify_file_down_checkbox = new javax.swing.JCheckBox();
+        verify_file_disk_checkbox = new javax.swing.JCheckBox();
         down_dir_label = new javax.swing.JLabel();
         change_download_dir_button = new javax.swing.JButton();
         default_slots_down_label = new javax.swing.JLabel();
         multi_slot_down_checkbox = new javax.swing.JCheckBox();
+        auto_slots_down_checkbox = new javax.swing.JCheckBox();
         limit_download_speed_checkbox = new javax.swing.JCheckBox();
         max_down_speed_label = new javax.swing.JLabel();
         max_down_speed_spinner = new javax.swing.JSpinner();
@@ -515,6 +668,35 @@ public final class SettingsDialog extends javax.swing.JDialog {
         proxy_user_textfield = new javax.swing.JTextField();
         proxy_pass_label = new javax.swing.JLabel();
         proxy_pass_textfield = new javax.swing.JPasswordField();
+        fair_share_checkbox = new javax.swing.JCheckBox();
+        virtual_threads_checkbox = new javax.swing.JCheckBox();
+        async_http_checkbox = new javax.swing.JCheckBox();
+        max_connections_label = new javax.swing.JLabel();
+        max_connections_spinner = new javax.swing.JSpinner();
+        tuning_panel = new javax.swing.JPanel();
+        tuning_warning_label = new javax.swing.JLabel();
+        http_max_connections_label = new javax.swing.JLabel();
+        http_max_connections_spinner = new javax.swing.JSpinner();
+        http_max_connections_per_route_label = new javax.swing.JLabel();
+        http_max_connections_per_route_spinner = new javax.swing.JSpinner();
+        http_connect_timeout_label = new javax.swing.JLabel();
+        http_connect_timeout_spinner = new javax.swing.JSpinner();
+        http_socket_timeout_label = new javax.swing.JLabel();
+        http_socket_timeout_spinner = new javax.swing.JSpinner();
+        http_socket_buffer_size_label = new javax.swing.JLabel();
+        http_socket_buffer_size_spinner = new javax.swing.JSpinner();
+        http_tcp_nodelay_checkbox = new javax.swing.JCheckBox();
+        adaptive_chunk_size_checkbox = new javax.swing.JCheckBox();
+        max_chunk_range_size_label = new javax.swing.JLabel();
+        max_chunk_range_size_spinner = new javax.swing.JSpinner();
+        watchdog_min_speed_label = new javax.swing.JLabel();
+        watchdog_min_speed_spinner = new javax.swing.JSpinner();
+        watchdog_first_byte_timeout_label = new javax.swing.JLabel();
+        watchdog_first_byte_timeout_spinner = new javax.swing.JSpinner();
+        max_transfer_memory_label = new javax.swing.JLabel();
+        max_transfer_memory_spinner = new javax.swing.JSpinner();
+        streamer_min_speed_label = new javax.swing.JLabel();
+        streamer_min_speed_spinner = new javax.swing.JSpinner();
         status = new javax.swing.JLabel();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
@@ -556,6 +738,15 @@ public final class SettingsDialog extends javax.swing.JDialog {
         verify_file_down_checkbox.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
         verify_file_down_checkbox.setText("Verify file integrity (when download is finished)");
         verify_file_down_checkbox.setDoubleBuffered(true);
+        verify_file_down_checkbox.addChangeListener(new javax.swing.event.ChangeListener() {
+            public void stateChanged(javax.swing.event.ChangeEvent evt) {
+                verify_file_down_checkboxStateChanged(evt);
+            }
+        });
+
+        verify_file_disk_checkbox.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        verify_file_disk_checkbox.setText("Read the whole file back from disk to verify it (slow)");
+        verify_file_disk_checkbox.setDoubleBuffered(true);
 
         down_dir_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
         down_dir_label.setText("Default downloads directory:");
@@ -583,6 +774,10 @@ public final class SettingsDialog extends javax.swing.JDialog {
             }
         });
 
+        auto_slots_down_checkbox.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        auto_slots_down_checkbox.setText("Auto-tune slots while downloading");
+        auto_slots_down_checkbox.setDoubleBuffered(true);
+
         limit_download_speed_checkbox.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
         limit_download_speed_checkbox.setText("Limit download speed");
         limit_download_speed_checkbox.addChangeListener(new javax.swing.event.ChangeListener() {
@@ -619,8 +814,12 @@ public final class SettingsDialog extends javax.swing.JDialog {
                     .addGroup(javax.swing.GroupLayout.Alignment.LEADING, downloads_panelLayout.createSequentialGroup()
                         .addGroup(downloads_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                             .addComponent(verify_file_down_checkbox)
+                            .addGroup(downloads_panelLayout.createSequentialGroup()
+                                .addGap(12, 12, 12)
+                                .addComponent(verify_file_disk_checkbox))
                             .addComponent(down_dir_label)
                             .addComponent(multi_slot_down_checkbox)
+                            .addComponent(auto_slots_down_checkbox)
                             .addComponent(rec_download_slots_label)
                             .addComponent(limit_download_speed_checkbox)
                             .addGroup(downloads_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING, false)
@@ -666,6 +865,8 @@ public final class SettingsDialog extends javax.swing.JDialog {
                     .addComponent(default_slots_down_label)
                     .addComponent(default_slots_down_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(auto_slots_down_checkbox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(rec_download_slots_label)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(jSeparator3, javax.swing.GroupLayout.PREFERRED_SIZE, 10, javax.swing.GroupLayout.PREFERRED_SIZE)
@@ -679,7 +880,9 @@ public final class SettingsDialog extends javax.swing.JDialog {
                 .addComponent(jSeparator4, javax.swing.GroupLayout.PREFERRED_SIZE, 10, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(verify_file_down_checkbox)
-                .addContainerGap(151, Short.MAX_VALUE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(verify_file_disk_checkbox)
+                .addContainerGap(112, Short.MAX_VALUE))
         );
 
         jTabbedPane1.addTab("Downloads", downloads_panel);
@@ -1089,13 +1292,40 @@ public final class SettingsDialog extends javax.swing.JDialog {
                 .addContainerGap())
         );
 
+        fair_share_checkbox.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        fair_share_checkbox.setText("Share limited speed between transfers (not between connections)");
+        fair_share_checkbox.setDoubleBuffered(true);
+
+        virtual_threads_checkbox.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        virtual_threads_checkbox.setText("Run transfer workers on virtual threads (Java 21+, app restart required)");
+        virtual_threads_checkbox.setDoubleBuffered(true);
+
+        async_http_checkbox.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        async_http_checkbox.setText("Download slots share one non-blocking HTTP engine (http links only, up to 64 slots)");
+        async_http_checkbox.setDoubleBuffered(true);
+
+        max_connections_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        max_connections_label.setText("Max connections shared by auto-slot downloads:");
+        max_connections_label.setDoubleBuffered(true);
+
+        max_connections_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        max_connections_spinner.setDoubleBuffered(true);
+
         javax.swing.GroupLayout jPanel1Layout = new javax.swing.GroupLayout(jPanel1);
         jPanel1.setLayout(jPanel1Layout);
         jPanel1Layout.setHorizontalGroup(
             jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
             .addGroup(jPanel1Layout.createSequentialGroup()
                 .addContainerGap()
-                .addComponent(proxy_panel, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(proxy_panel, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(fair_share_checkbox)
+                    .addComponent(virtual_threads_checkbox)
+                    .addComponent(async_http_checkbox)
+                    .addGroup(jPanel1Layout.createSequentialGroup()
+                        .addComponent(max_connections_label)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(max_connections_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)))
                 .addContainerGap())
         );
         jPanel1Layout.setVerticalGroup(
@@ -1103,11 +1333,193 @@ public final class SettingsDialog extends javax.swing.JDialog {
             .addGroup(jPanel1Layout.createSequentialGroup()
                 .addContainerGap()
                 .addComponent(proxy_panel, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
-                .addContainerGap(327, Short.MAX_VALUE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(fair_share_checkbox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(virtual_threads_checkbox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(async_http_checkbox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(max_connections_label)
+                    .addComponent(max_connections_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addContainerGap(165, Short.MAX_VALUE))
         );
 
         jTabbedPane1.addTab("Advanced", jPanel1);
 
+        tuning_warning_label.setFont(new java.awt.Font("Dialog", 1, 16)); // NOI18N
+        tuning_warning_label.setText("Warning: some of these changes need an app restart.");
+        tuning_warning_label.setEnabled(false);
+
+        http_max_connections_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_max_connections_label.setText("Max HTTP connections:");
+        http_max_connections_label.setDoubleBuffered(true);
+
+        http_max_connections_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_max_connections_spinner.setDoubleBuffered(true);
+
+        http_max_connections_per_route_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_max_connections_per_route_label.setText("Max HTTP connections per host:");
+        http_max_connections_per_route_label.setDoubleBuffered(true);
+
+        http_max_connections_per_route_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_max_connections_per_route_spinner.setDoubleBuffered(true);
+
+        http_connect_timeout_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_connect_timeout_label.setText("HTTP connect timeout (secs):");
+        http_connect_timeout_label.setDoubleBuffered(true);
+
+        http_connect_timeout_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_connect_timeout_spinner.setDoubleBuffered(true);
+
+        http_socket_timeout_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_socket_timeout_label.setText("HTTP read timeout (secs):");
+        http_socket_timeout_label.setDoubleBuffered(true);
+
+        http_socket_timeout_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_socket_timeout_spinner.setDoubleBuffered(true);
+
+        http_socket_buffer_size_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_socket_buffer_size_label.setText("Socket buffer size (KB):");
+        http_socket_buffer_size_label.setDoubleBuffered(true);
+
+        http_socket_buffer_size_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_socket_buffer_size_spinner.setDoubleBuffered(true);
+
+        http_tcp_nodelay_checkbox.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        http_tcp_nodelay_checkbox.setText("Send small packets at once (TCP_NODELAY)");
+        http_tcp_nodelay_checkbox.setDoubleBuffered(true);
+
+        adaptive_chunk_size_checkbox.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        adaptive_chunk_size_checkbox.setText("Adaptive chunk range size");
+        adaptive_chunk_size_checkbox.setDoubleBuffered(true);
+
+        max_chunk_range_size_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        max_chunk_range_size_label.setText("Max chunk range size (MB):");
+        max_chunk_range_size_label.setDoubleBuffered(true);
+
+        max_chunk_range_size_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        max_chunk_range_size_spinner.setDoubleBuffered(true);
+
+        watchdog_min_speed_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        watchdog_min_speed_label.setText("Stalled connection below (KB/s):");
+        watchdog_min_speed_label.setDoubleBuffered(true);
+
+        watchdog_min_speed_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        watchdog_min_speed_spinner.setDoubleBuffered(true);
+
+        watchdog_first_byte_timeout_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        watchdog_first_byte_timeout_label.setText("First byte timeout (secs):");
+        watchdog_first_byte_timeout_label.setDoubleBuffered(true);
+
+        watchdog_first_byte_timeout_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        watchdog_first_byte_timeout_spinner.setDoubleBuffered(true);
+
+        max_transfer_memory_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        max_transfer_memory_label.setText("Max transfer memory (MB):");
+        max_transfer_memory_label.setDoubleBuffered(true);
+
+        max_transfer_memory_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        max_transfer_memory_spinner.setDoubleBuffered(true);
+
+        streamer_min_speed_label.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        streamer_min_speed_label.setText("Streamer reserved speed (KB/s):");
+        streamer_min_speed_label.setDoubleBuffered(true);
+
+        streamer_min_speed_spinner.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
+        streamer_min_speed_spinner.setDoubleBuffered(true);
+
+        javax.swing.GroupLayout tuning_panelLayout = new javax.swing.GroupLayout(tuning_panel);
+        tuning_panel.setLayout(tuning_panelLayout);
+        tuning_panelLayout.setHorizontalGroup(
+            tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(tuning_panelLayout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                    .addComponent(tuning_warning_label)
+                    .addComponent(http_tcp_nodelay_checkbox)
+                    .addComponent(adaptive_chunk_size_checkbox)
+                    .addGroup(tuning_panelLayout.createSequentialGroup()
+                        .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                            .addComponent(http_max_connections_label)
+                            .addComponent(http_max_connections_per_route_label)
+                            .addComponent(http_connect_timeout_label)
+                            .addComponent(http_socket_timeout_label)
+                            .addComponent(http_socket_buffer_size_label)
+                            .addComponent(max_chunk_range_size_label)
+                            .addComponent(watchdog_min_speed_label)
+                            .addComponent(watchdog_first_byte_timeout_label)
+                            .addComponent(max_transfer_memory_label)
+                            .addComponent(streamer_min_speed_label))
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+                            .addComponent(http_max_connections_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                            .addComponent(http_max_connections_per_route_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                            .addComponent(http_connect_timeout_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                            .addComponent(http_socket_timeout_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                            .addComponent(http_socket_buffer_size_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                            .addComponent(max_chunk_range_size_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                            .addComponent(watchdog_min_speed_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                            .addComponent(watchdog_first_byte_timeout_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                            .addComponent(max_transfer_memory_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                            .addComponent(streamer_min_speed_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE))))
+                .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+        );
+        tuning_panelLayout.setVerticalGroup(
+            tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
+            .addGroup(tuning_panelLayout.createSequentialGroup()
+                .addContainerGap()
+                .addComponent(tuning_warning_label)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(http_max_connections_label)
+                    .addComponent(http_max_connections_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(http_max_connections_per_route_label)
+                    .addComponent(http_max_connections_per_route_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(http_connect_timeout_label)
+                    .addComponent(http_connect_timeout_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(http_socket_timeout_label)
+                    .addComponent(http_socket_timeout_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(http_socket_buffer_size_label)
+                    .addComponent(http_socket_buffer_size_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(http_tcp_nodelay_checkbox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(adaptive_chunk_size_checkbox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(max_chunk_range_size_label)
+                    .addComponent(max_chunk_range_size_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(watchdog_min_speed_label)
+                    .addComponent(watchdog_min_speed_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(watchdog_first_byte_timeout_label)
+                    .addComponent(watchdog_first_byte_timeout_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(max_transfer_memory_label)
+                    .addComponent(max_transfer_memory_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(tuning_panelLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(streamer_min_speed_label)
+                    .addComponent(streamer_min_speed_spinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+        );
+
+        jTabbedPane1.addTab("Tuning", tuning_panel);
+
         status.setFont(new java.awt.Font("Dialog", 1, 20)); // NOI18N
         status.setForeground(new java.awt.Color(9, 109, 235));
         status.setDoubleBuffered(true);
@@ -1184,14 +1596,57 @@ public final class SettingsDialog extends javax.swing.JDialog {
             insertSettingValueInDB("default_slots_down", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", default_slots_down_spinner)));
             insertSettingValueInDB("default_slots_up", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", default_slots_up_spinner)));
             insertSettingValueInDB("use_slots_down", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", multi_slot_down_checkbox) ? "yes" : "no");
+            insertSettingValueInDB("auto_slots_down", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", auto_slots_down_checkbox) ? "yes" : "no");
             insertSettingValueInDB("use_slots_up", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", multi_slot_up_checkbox) ? "yes" : "no");
             insertSettingValueInDB("max_downloads", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", max_downloads_spinner)));
             insertSettingValueInDB("max_uploads", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", max_uploads_spinner)));
             insertSettingValueInDB("verify_down_file", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", verify_file_down_checkbox) ? "yes" : "no");
+            insertSettingValueInDB("verify_down_file_disk", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", verify_file_disk_checkbox) ? "yes" : "no");
             insertSettingValueInDB("limit_download_speed", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", limit_download_speed_checkbox) ? "yes" : "no");
             insertSettingValueInDB("max_download_speed", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", max_down_speed_spinner)));
             insertSettingValueInDB("limit_upload_speed", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", limit_upload_speed_checkbox) ? "yes" : "no");
             insertSettingValueInDB("max_upload_speed", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", max_up_speed_spinner)));
+            insertSettingValueInDB("fair_share_per_transfer", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", fair_share_checkbox) ? "yes" : "no");
+            insertSettingValueInDB("async_http_down", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", async_http_checkbox) ? "yes" : "no");
+            insertSettingValueInDB("max_connections_down", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", max_connections_spinner)));
+            insertSettingValueInDB("adaptive_chunk_size", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", adaptive_chunk_size_checkbox) ? "yes" : "no");
+            insertSettingValueInDB("max_chunk_range_size", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", max_chunk_range_size_spinner)));
+
+            //These are read once by their singletons
+            boolean tuning_changed = false;
+
+            tuning_changed |= updateTuningSetting("http_max_connections", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", http_max_connections_spinner)), String.valueOf(HttpConnectionPool.MAX_CONNECTIONS_DEFAULT));
+            tuning_changed |= updateTuningSetting("http_max_connections_per_route", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", http_max_connections_per_route_spinner)), String.valueOf(HttpConnectionPool.MAX_CONNECTIONS_PER_ROUTE_DEFAULT));
+            tuning_changed |= updateTuningSetting("http_connect_timeout", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", http_connect_timeout_spinner)), String.valueOf(HttpConnectionPool.CONNECT_TIMEOUT_DEFAULT));
+            tuning_changed |= updateTuningSetting("http_socket_timeout", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", http_socket_timeout_spinner)), String.valueOf(HttpConnectionPool.SOCKET_TIMEOUT_DEFAULT));
+            tuning_changed |= updateTuningSetting("http_socket_buffer_size", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", http_socket_buffer_size_spinner) * 1024), String.valueOf(HttpConnectionPool.SOCKET_BUFFER_SIZE_DEFAULT));
+            tuning_changed |= updateTuningSetting("http_tcp_nodelay", (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", http_tcp_nodelay_checkbox) ? "yes" : "no", HttpConnectionPool.TCP_NODELAY_DEFAULT ? "yes" : "no");
+            tuning_changed |= updateTuningSetting("watchdog_min_speed", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", watchdog_min_speed_spinner)), String.valueOf(TransferWatchdog.MIN_SPEED_DEFAULT));
+            tuning_changed |= updateTuningSetting("watchdog_first_byte_timeout", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", watchdog_first_byte_timeout_spinner)), String.valueOf(TransferWatchdog.FIRST_BYTE_TIMEOUT_DEFAULT));
+            tuning_changed |= updateTuningSetting("max_transfer_memory", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", max_transfer_memory_spinner)), String.valueOf(ChunkBufferPool.TRANSFER_MEMORY_DEFAULT));
+            tuning_changed |= updateTuningSetting("streamer_min_speed", String.valueOf((int) swingReflectionInvokeAndWaitForReturn("getValue", streamer_min_speed_spinner)), String.valueOf(KissVideoStreamServer.STREAMER_MIN_SPEED_DEFAULT));
+
+            if (tuning_changed) {
+
+                _main_panel.setRestart(true);
+            }
+
+            boolean old_virtual_threads = TransferRuntime.VIRTUAL_THREADS_DEFAULT;
+
+            String virtual_threads_val = DBTools.selectSettingValueFromDB("use_virtual_threads");
+
+            if (virtual_threads_val != null) {
+                old_virtual_threads = virtual_threads_val.equals("yes");
+            }
+
+            boolean virtual_threads = (boolean) swingReflectionInvokeAndWaitForReturn("isSelected", virtual_threads_checkbox);
+
+            insertSettingValueInDB("use_virtual_threads", virtual_threads ? "yes" : "no");
+
+            if (virtual_threads != old_virtual_threads) {
+
+                _main_panel.setRestart(true);
+            }
 
             boolean old_use_proxy = false;
 
@@ -1503,11 +1958,13 @@ public final class SettingsDialog extends javax.swing.JDialog {
 
             default_slots_down_spinner.setEnabled(false);
             default_slots_down_label.setEnabled(false);
+            auto_slots_down_checkbox.setEnabled(false);
 
         } else {
 
             default_slots_down_spinner.setEnabled(true);
             default_slots_down_label.setEnabled(true);
+            auto_slots_down_checkbox.setEnabled(true);
         }
     }//GEN-LAST:event_multi_slot_down_checkboxStateChanged
 
@@ -1559,6 +2016,11 @@ public final class SettingsDialog extends javax.swing.JDialog {
         }
     }//GEN-LAST:event_limit_download_speed_checkboxStateChanged
 
+    private void verify_file_down_checkboxStateChanged(javax.swing.event.ChangeEvent evt) {//GEN-FIRST:event_verify_file_down_checkboxStateChanged
+
+        verify_file_disk_checkbox.setEnabled(verify_file_down_checkbox.isSelected());
+    }//GEN-LAST:event_verify_file_down_checkboxStateChanged
+
     private void encrypt_pass_checkboxActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_encrypt_pass_checkboxActionPerformed
 
         encrypt_pass_checkbox.setEnabled(false);
@@ -1984,8 +2446,11 @@ public final class SettingsDialog extends javax.swing.JDialog {
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JPanel accounts_panel;
+    private javax.swing.JCheckBox adaptive_chunk_size_checkbox;
     private javax.swing.JButton add_elc_account_button;
     private javax.swing.JButton add_mega_account_button;
+    private javax.swing.JCheckBox async_http_checkbox;
+    private javax.swing.JCheckBox auto_slots_down_checkbox;
     private javax.swing.JButton cancel_button;
     private javax.swing.JButton change_download_dir_button;
     private javax.swing.JLabel default_dir_label;
@@ -2000,6 +2465,18 @@ public final class SettingsDialog extends javax.swing.JDialog {
     private javax.swing.JScrollPane elc_accounts_scrollpane;
     private javax.swing.JTable elc_accounts_table;
     private javax.swing.JCheckBox encrypt_pass_checkbox;
+    private javax.swing.JCheckBox fair_share_checkbox;
+    private javax.swing.JLabel http_connect_timeout_label;
+    private javax.swing.JSpinner http_connect_timeout_spinner;
+    private javax.swing.JLabel http_max_connections_label;
+    private javax.swing.JLabel http_max_connections_per_route_label;
+    private javax.swing.JSpinner http_max_connections_per_route_spinner;
+    private javax.swing.JSpinner http_max_connections_spinner;
+    private javax.swing.JLabel http_socket_buffer_size_label;
+    private javax.swing.JSpinner http_socket_buffer_size_spinner;
+    private javax.swing.JLabel http_socket_timeout_label;
+    private javax.swing.JSpinner http_socket_timeout_spinner;
+    private javax.swing.JCheckBox http_tcp_nodelay_checkbox;
     private javax.swing.JPanel jPanel1;
     private javax.swing.JSeparator jSeparator1;
     private javax.swing.JSeparator jSeparator2;
@@ -2010,10 +2487,16 @@ public final class SettingsDialog extends javax.swing.JDialog {
     private javax.swing.JTabbedPane jTabbedPane1;
     private javax.swing.JCheckBox limit_download_speed_checkbox;
     private javax.swing.JCheckBox limit_upload_speed_checkbox;
+    private javax.swing.JLabel max_chunk_range_size_label;
+    private javax.swing.JSpinner max_chunk_range_size_spinner;
     private javax.swing.JLabel max_down_speed_label;
     private javax.swing.JSpinner max_down_speed_spinner;
+    private javax.swing.JLabel max_connections_label;
+    private javax.swing.JSpinner max_connections_spinner;
     private javax.swing.JLabel max_downloads_label;
     private javax.swing.JSpinner max_downloads_spinner;
+    private javax.swing.JLabel max_transfer_memory_label;
+    private javax.swing.JSpinner max_transfer_memory_spinner;
     private javax.swing.JLabel max_up_speed_label;
     private javax.swing.JSpinner max_up_speed_spinner;
     private javax.swing.JLabel max_uploads_label;
@@ -2040,9 +2523,19 @@ public final class SettingsDialog extends javax.swing.JDialog {
     private javax.swing.JButton remove_elc_account_button;
     private javax.swing.JButton remove_mega_account_button;
     private javax.swing.JLabel status;
+    private javax.swing.JLabel streamer_min_speed_label;
+    private javax.swing.JSpinner streamer_min_speed_spinner;
+    private javax.swing.JPanel tuning_panel;
+    private javax.swing.JLabel tuning_warning_label;
     private javax.swing.JButton unlock_accounts_button;
     private javax.swing.JPanel uploads_panel;
     private javax.swing.JCheckBox use_proxy_checkbox;
+    private javax.swing.JCheckBox verify_file_disk_checkbox;
     private javax.swing.JCheckBox verify_file_down_checkbox;
+    private javax.swing.JCheckBox virtual_threads_checkbox;
+    private javax.swing.JLabel watchdog_first_byte_timeout_label;
+    private javax.swing.JSpinner watchdog_first_byte_timeout_spinner;
+    private javax.swing.JLabel watchdog_min_speed_label;
+    private javax.swing.JSpinner watchdog_min_speed_spinner;
     // End of variables declaration//GEN-END:variables
 }
@@ -0,0 +1,145 @@
+package megabasterd;
+
+import java.util.logging.Level;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class SlotAutoTuner implements Runnable {
+
+    public static final int SAMPLE_INTERVAL = 5;
+    public static final double MIN_SPEED_GAIN = 0.05d;
+    public static final int MAX_SLOT_ERRORS = 3;
+    public static final int HOLD_INTERVALS = 6;
+
+    private final Download _download;
+    private long _last_progress;
+    private double _last_speed;
+    private int _ceiling;
+    private int _hold;
+    private boolean _probing;
+
+    public SlotAutoTuner(Download download) {
+        _download = download;
+        _last_speed = 0d;
+        _ceiling = _download.getMax_workers();
+        _hold = 0;
+        _probing = false;
+    }
+
+    @Override
+    public void run() {
+
+        System.out.println("SlotAutoTuner hello!");
+
+        ConnectionBudget budget = _download.getMain_panel().getConnection_budget();
+
+        budget.register(_download);
+
+        _last_progress = _download.getProgress();
+
+        while (!_download.isExit() && !_download.isFinishing_download()) {
+
+            try {
+
+                Thread.sleep(SAMPLE_INTERVAL * 1000);
+
+            } catch (InterruptedException ex) {
+
+                getLogger(SlotAutoTuner.class.getName()).log(Level.SEVERE, null, ex);
+
+                break;
+            }
+
+            if (_download.isExit() || _download.isFinishing_download()) {
+
+                break;
+            }
+
+            long progress = _download.getProgress();
+
+            double speed = (progress - _last_progress) / (double) SAMPLE_INTERVAL;
+
+            _last_progress = progress;
+
+            int slot_errors = _download.getSlot_errors().getAndSet(0), bandwidth_errors = _download.getBandwidth_errors().getAndSet(0);
+
+            if (_download.isPaused()) {
+
+                _last_speed = 0d;
+
+                _probing = false;
+
+                continue;
+            }
+
+            int slots = _download.countActiveSlots(), new_slots = slots;
+
+            budget.sample(_download, slots, speed);
+
+            int quota = budget.getQuota(_download), limit = Math.min(_ceiling, quota);
+
+            if (bandwidth_errors > 0 || slot_errors >= MAX_SLOT_ERRORS) {
+
+                new_slots = Math.max(Download.MIN_WORKERS, Math.min(slots / 2, quota));
+
+                _ceiling = Math.max(Download.MIN_WORKERS, slots - 1);
+
+                _hold = HOLD_INTERVALS;
+
+                _probing = false;
+
+            } else if (slots > quota) {
+
+                /* The global connection budget wants these connections for another download. */
+                new_slots = quota;
+
+                _probing = false;
+
+            } else if (_probing && speed < _last_speed * (1 + MIN_SPEED_GAIN)) {
+
+                new_slots = Math.max(Download.MIN_WORKERS, slots - 1);
+
+                _ceiling = new_slots;
+
+                _hold = HOLD_INTERVALS;
+
+                _probing = false;
+
+            } else if (_hold > 0) {
+
+                if (--_hold == 0) {
+
+                    _ceiling = _download.getMax_workers();
+                }
+
+                _probing = false;
+
+            } else if (slots < limit) {
+
+                new_slots = slots + 1;
+
+                _probing = true;
+
+            } else {
+
+                _probing = false;
+            }
+
+            _last_speed = speed;
+
+            if (new_slots != slots) {
+
+                getLogger(SlotAutoTuner.class.getName()).log(Level.FINE, "SlotAutoTuner: {0} -> {1} slots ({2}/s, {3} errors, {4} 509)", new Object[]{slots, new_slots, MiscTools.formatBytes((long) speed), slot_errors, bandwidth_errors});
+
+                _download.setActiveSlots(new_slots);
+            }
+        }
+
+        budget.unregister(_download);
+
+        System.out.println("SlotAutoTuner bye bye");
+    }
+}
@@ -1,146 +1,94 @@
 package megabasterd;
 
-import java.util.ArrayDeque;
 import java.util.concurrent.TimeUnit;
 import static megabasterd.MiscTools.formatBytes;
 
-public final class SpeedMeter implements Runnable {
+public final class SpeedMeter {
 
-    public static final int SPEED_BUFFER_MAX_SIZE = 12;
+    public static final double EWMA_ALPHA = 0.25d;
     private final Transference _transference;
-    private final GlobalSpeedMeter _gspeed;
     private volatile long _lastSpeed;
-    private volatile boolean _exit;
-    private final ArrayDeque<Long> _speeds;
-    private volatile boolean _clearSpeedBuffer;
+    private long _last_bytes;
+    private long _last_sample;
+    private double _avg_speed;
 
-    SpeedMeter(Transference transference, GlobalSpeedMeter gspeed) {
+    SpeedMeter(Transference transference) {
         _transference = transference;
         _lastSpeed = 0;
-        _gspeed = gspeed;
-        _exit = false;
-        _speeds = new ArrayDeque<>();
+        _last_bytes = transference.getPartialProgress().sum();
+        _last_sample = System.nanoTime();
+        _avg_speed = 0d;
     }
 
     public Transference getTransference() {
         return _transference;
     }
 
-    public void setExit(boolean exit) {
-        _exit = exit;
-    }
-
     public long getLastSpeed() {
         return _lastSpeed;
     }
 
-    public void setLastSpeed(long speed) {
-        _lastSpeed = speed;
-    }
-
-    private long calcAverageSpeed(long sp) {
-
-        if (_clearSpeedBuffer) {
-
-            _speeds.clear();
-
-            _clearSpeedBuffer = false;
-        }
-
-        _speeds.add(sp);
+    public void reset() {
 
-        if (_speeds.size() > SPEED_BUFFER_MAX_SIZE) {
+        _last_bytes = _transference.getPartialProgress().sum();
 
-            _speeds.poll();
-        }
-
-        double total = 0, weight = 0.1, total_weight = 0;
-
-        for (Long speed : _speeds) {
+        _last_sample = System.nanoTime();
 
-            total_weight += weight;
+        _avg_speed = 0d;
 
-            total += weight * speed;
-
-            weight += 0.1;
-        }
-
-        sp = Math.round(total / total_weight);
-
-        return sp;
-    }
-
-    @Override
-    public void run() {
-        System.out.println("SpeedMeter hello!");
-
-        long last_progress, progress, sp, avgSp, sleepTime, wakeupTime;
-
-        _gspeed.attachSpeedMeter(this);
+        _lastSpeed = 0;
 
         _transference.getView().updateSpeed("------", true);
 
         _transference.getView().updateRemainingTime("--d --:--:--", true);
+    }
 
-        last_progress = _transference.getProgress();
-
-        while (!_exit) {
-
-            if (!_exit) {
-
-                sleepTime = System.currentTimeMillis();
-
-                _gspeed.secureMultiWait();
-
-                wakeupTime = System.currentTimeMillis();
-
-                progress = _transference.getProgress();
-
-                if (_transference.isPaused()) {
+    public long sample(long now) {
 
-                    _transference.getView().updateSpeed("------", true);
+        long bytes = _transference.getPartialProgress().sum();
 
-                    _transference.getView().updateRemainingTime("--d --:--:--", true);
+        double secs = (now - _last_sample) / 1e9d;
 
-                    _gspeed.getSpeedMap().put(this, 0L);
+        if (_transference.isPaused() || secs <= 0) {
 
-                    _gspeed.secureNotify();
+            if (_lastSpeed > 0 || _avg_speed > 0) {
 
-                } else if (progress > last_progress) {
+                reset();
+            }
 
-                    double current_speed = (progress - last_progress) / (((double) (wakeupTime - sleepTime)) / 1000);
+            _last_bytes = bytes;
 
-                    last_progress = progress;
+            _last_sample = now;
 
-                    sp = Math.round(current_speed);
+            return 0;
+        }
 
-                    avgSp = calcAverageSpeed(sp);
+        double current_speed = Math.max(0, bytes - _last_bytes) / secs;
 
-                    if (sp > 0) {
+        _last_bytes = bytes;
 
-                        _transference.getView().updateSpeed(formatBytes(sp) + "/s", true);
+        _last_sample = now;
 
-                        _transference.getView().updateRemainingTime(calculateRemTime((long) Math.floor((_transference.getFile_size() - progress) / avgSp)), true);
+        _avg_speed = _avg_speed > 0 ? EWMA_ALPHA * current_speed + (1 - EWMA_ALPHA) * _avg_speed : current_speed;
 
-                        _gspeed.getSpeedMap().put(this, sp);
+        long sp = Math.round(_avg_speed);
 
-                        _gspeed.secureNotify();
-                    }
+        if (sp > 0) {
 
-                } else {
+            _transference.getView().updateSpeed(formatBytes(sp) + "/s", true);
 
-                    _transference.getView().updateSpeed("------", true);
+            _transference.getView().updateRemainingTime(calculateRemTime((long) Math.floor(Math.max(0, _transference.getFile_size() - _transference.getProgress()) / _avg_speed)), true);
 
-                    _transference.getView().updateRemainingTime("--d --:--:--", true);
+        } else if (_lastSpeed > 0) {
 
-                    _gspeed.getSpeedMap().put(this, 0L);
+            _transference.getView().updateSpeed("------", true);
 
-                    _gspeed.secureNotify();
-                }
-            }
+            _transference.getView().updateRemainingTime("--d --:--:--", true);
         }
 
-        _gspeed.detachSpeedMeter(this);
+        _lastSpeed = sp;
+
+        return sp;
     }
 
     private String calculateRemTime(long seconds) {
@@ -1,203 +1,70 @@
 package megabasterd;
 
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import static java.util.logging.Logger.getLogger;
-
 /**
  *
  * @author tonikelope
  */
-public final class StreamThrottlerSupervisor implements Runnable, SecureMultiThreadNotifiable {
+public final class StreamThrottlerSupervisor {
 
-    private ConcurrentLinkedQueue<Integer> _input_slice_queue, _output_slice_queue;
+    public static final boolean FAIR_SHARE_DEFAULT = true;
 
     private final int _slice_size;
 
-    private volatile int _maxBytesPerSecInput;
-
-    private volatile int _maxBytesPerSecOutput;
-
-    private volatile boolean _queue_swapping;
-
-    private final Object _secure_notify_lock_multi;
+    private final BandwidthNode _input_node;
 
-    private final Object _timer_lock;
-
-    private final ConcurrentHashMap<Thread, Boolean> _notified_threads;
+    private final BandwidthNode _output_node;
 
     public StreamThrottlerSupervisor(int maxBytesPerSecInput, int maxBytesPerSecOutput, int slice_size) {
 
-        _secure_notify_lock_multi = new Object();
-
-        _timer_lock = new Object();
-
-        _queue_swapping = false;
-
-        _maxBytesPerSecInput = maxBytesPerSecInput;
-
-        _maxBytesPerSecOutput = maxBytesPerSecOutput;
-
         _slice_size = slice_size;
 
-        _input_slice_queue = new ConcurrentLinkedQueue<>();
-
-        _output_slice_queue = new ConcurrentLinkedQueue<>();
+        _input_node = new BandwidthNode(null, maxBytesPerSecInput, 0, BandwidthNode.DEFAULT_WEIGHT);
 
-        _notified_threads = new ConcurrentHashMap<>();
+        _output_node = new BandwidthNode(null, maxBytesPerSecOutput, 0, BandwidthNode.DEFAULT_WEIGHT);
+    }
 
+    public int getSlice_size() {
+        return _slice_size;
     }
 
     public int getMaxBytesPerSecInput() {
-        return _maxBytesPerSecInput;
+        return (int) _input_node.getCap();
     }
 
     public void setMaxBytesPerSecInput(int maxBytesPerSecInput) {
-        _maxBytesPerSecInput = maxBytesPerSecInput;
+        _input_node.setCap(maxBytesPerSecInput);
     }
 
     public int getMaxBytesPerSecOutput() {
-        return _maxBytesPerSecOutput;
+        return (int) _output_node.getCap();
     }
 
     public void setMaxBytesPerSecOutput(int maxBytesPerSecOutput) {
-        _maxBytesPerSecOutput = maxBytesPerSecOutput;
+        _output_node.setCap(maxBytesPerSecOutput);
     }
 
-    public ConcurrentLinkedQueue<Integer> getInput_slice_queue() {
-        return _input_slice_queue;
+    public boolean isFair_share() {
+        return _input_node.isPer_transfer();
     }
 
-    public ConcurrentLinkedQueue<Integer> getOutput_slice_queue() {
-        return _output_slice_queue;
+    public void setFair_share(boolean fair_share) {
+        _input_node.setPer_transfer(fair_share);
+        _output_node.setPer_transfer(fair_share);
     }
 
-    public boolean isQueue_swapping() {
-        return _queue_swapping;
+    public BandwidthNode getInput_node() {
+        return _input_node;
     }
 
-    @Override
-    public void secureMultiWait() {
-
-        synchronized (_secure_notify_lock_multi) {
-
-            Thread current_thread = Thread.currentThread();
-
-            if (!_notified_threads.containsKey(current_thread)) {
-
-                _notified_threads.put(current_thread, false);
-            }
-
-            while (!_notified_threads.get(current_thread)) {
-
-                try {
-                    _secure_notify_lock_multi.wait();
-                } catch (InterruptedException ex) {
-                    getLogger(StreamThrottlerSupervisor.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
-
-            _notified_threads.put(current_thread, false);
-        }
+    public BandwidthNode getOutput_node() {
+        return _output_node;
     }
 
-    @Override
-    public void secureMultiNotifyAll() {
-
-        synchronized (_secure_notify_lock_multi) {
-
-            for (Map.Entry<Thread, Boolean> entry : _notified_threads.entrySet()) {
-
-                entry.setValue(true);
-            }
-
-            _secure_notify_lock_multi.notifyAll();
-        }
+    public BandwidthNode newInputNode(long cap, long min, int weight) {
+        return new BandwidthNode(_input_node, cap, min, weight);
     }
 
-    @Override
-    public void run() {
-
-        Timer timer = new Timer();
-
-        TimerTask task = new TimerTask() {
-
-            @Override
-            public void run() {
-                synchronized (_timer_lock) {
-
-                    _timer_lock.notify();
-                }
-            }
-        };
-
-        ConcurrentLinkedQueue<Integer> old_input_queue, new_input_queue, old_output_queue, new_output_queue;
-
-        old_input_queue = new ConcurrentLinkedQueue<>();
-
-        old_output_queue = new ConcurrentLinkedQueue<>();
-
-        new_input_queue = _resetSliceQueue(old_input_queue, _maxBytesPerSecInput);
-
-        new_output_queue = _resetSliceQueue(old_output_queue, _maxBytesPerSecOutput);
-
-        timer.schedule(task, 0, 1000);
-
-        while (true) {
-
-            _queue_swapping = true;
-
-            old_input_queue = _input_slice_queue;
-
-            old_output_queue = _output_slice_queue;
-
-            _input_slice_queue = new_input_queue;
-
-            _output_slice_queue = new_output_queue;
-
-            _queue_swapping = false;
-
-            secureMultiNotifyAll();
-
-            new_input_queue = _resetSliceQueue(old_input_queue, _maxBytesPerSecInput);
-
-            new_output_queue = _resetSliceQueue(old_output_queue, _maxBytesPerSecOutput);
-
-            synchronized (_timer_lock) {
-
-                try {
-                    _timer_lock.wait();
-                } catch (InterruptedException ex) {
-                    Logger.getLogger(StreamThrottlerSupervisor.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
-        }
+    public BandwidthNode newOutputNode(long cap, long min, int weight) {
+        return new BandwidthNode(_output_node, cap, min, weight);
     }
-
-    private ConcurrentLinkedQueue<Integer> _resetSliceQueue(ConcurrentLinkedQueue<Integer> queue, int max_bytes) {
-
-        if (max_bytes > 0) {
-
-            queue.clear();
-
-            int slice_num = (int) Math.floor((double) max_bytes / _slice_size);
-
-            for (int i = 0; i < slice_num; i++) {
-                queue.add(_slice_size);
-            }
-
-            if (max_bytes % _slice_size != 0) {
-
-                queue.add(max_bytes % _slice_size);
-            }
-        }
-
-        return queue;
-    }
-
 }
@@ -11,45 +11,37 @@ public final class ThrottledOutputStream extends OutputStream {
 
     private final OutputStream _rawStream;
 
-    private final StreamThrottlerSupervisor _stream_supervisor;
+    private final BandwidthNode _node;
 
-    private Integer slice_size;
+    private final int _slice_size;
 
-    public ThrottledOutputStream(OutputStream rawStream, StreamThrottlerSupervisor stream_supervisor) {
+    public ThrottledOutputStream(OutputStream rawStream, BandwidthNode node, int slice_size) {
 
         _rawStream = rawStream;
 
-        _stream_supervisor = stream_supervisor;
+        _node = node;
 
-        slice_size = null;
+        _slice_size = slice_size;
 
     }
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
 
-        if (_stream_supervisor.getMaxBytesPerSecOutput() > 0) {
+        if (_node.isLimited()) {
 
-            int writeLen = 0;
+            int writeLen = 0, slice;
 
-            do {
+            while (writeLen < len) {
 
-                throttle(len - writeLen);
+                slice = Math.min(len - writeLen, _node.getSlice_size(_slice_size));
 
-                if (slice_size != null) {
+                _node.consume(slice);
 
-                    _rawStream.write(b, off + writeLen, slice_size);
+                _rawStream.write(b, off + writeLen, slice);
 
-                    writeLen += slice_size;
-
-                } else {
-
-                    _rawStream.write(b, off + writeLen, len - writeLen);
-
-                    writeLen = len;
-                }
-
-            } while (writeLen < len);
+                writeLen += slice;
+            }
 
         } else {
 
@@ -60,16 +52,9 @@ public final class ThrottledOutputStream extends OutputStream {
     @Override
     public void write(int i) throws IOException {
 
-        if (_stream_supervisor.getMaxBytesPerSecOutput() > 0) {
-
-            throttle(1);
+        _node.consume(1);
 
-            _rawStream.write(i);
-
-        } else {
-
-            _rawStream.write(i);
-        }
+        _rawStream.write(i);
     }
 
     @Override
@@ -79,26 +64,4 @@ public final class ThrottledOutputStream extends OutputStream {
 
     }
 
-    private void throttle(int size) throws IOException {
-
-        slice_size = null;
-
-        while (_stream_supervisor.getMaxBytesPerSecOutput() > 0 && (_stream_supervisor.isQueue_swapping() || (slice_size = _stream_supervisor.getOutput_slice_queue().poll()) == null)) {
-
-            _stream_supervisor.secureMultiWait();
-        }
-
-        if (slice_size != null && size < slice_size) {
-
-            if (!_stream_supervisor.isQueue_swapping()) {
-
-                _stream_supervisor.getOutput_slice_queue().add(slice_size - size);
-
-                _stream_supervisor.secureMultiNotifyAll();
-            }
-
-            slice_size = size;
-        }
-    }
-
 }
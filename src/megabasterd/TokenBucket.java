@@ -0,0 +1,122 @@
+package megabasterd;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class TokenBucket {
+
+    public static final long BURST_NANOS = 100000000L;
+    public static final long MAX_PARK_NANOS = 100000000L;
+
+    private final AtomicLong _next_free;
+    private volatile long _rate;
+
+    public TokenBucket(long rate) {
+        _next_free = new AtomicLong(System.nanoTime());
+        _rate = rate;
+    }
+
+    public long getRate() {
+        return _rate;
+    }
+
+    public void setRate(long rate) {
+
+        _rate = rate;
+
+        _next_free.set(System.nanoTime());
+    }
+
+    public boolean isLimited() {
+        return _rate > 0;
+    }
+
+    public void consume(long bytes) throws InterruptedIOException {
+
+        long rate = _rate;
+
+        if (rate <= 0 || bytes <= 0) {
+            return;
+        }
+
+        long deadline = reserve(bytes, rate) - BURST_NANOS, wait;
+
+        while ((wait = deadline - System.nanoTime()) > 0 && _rate == rate) {
+
+            LockSupport.parkNanos(this, Math.min(wait, MAX_PARK_NANOS));
+
+            if (Thread.interrupted()) {
+
+                Thread.currentThread().interrupt();
+
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    public long getDelay(long bytes) {
+
+        long rate = _rate;
+
+        if (rate <= 0) {
+            return 0L;
+        }
+
+        long now = System.nanoTime();
+
+        return Math.max(_next_free.get(), now - BURST_NANOS) + (long) (bytes * 1e9d / rate) - BURST_NANOS - now;
+    }
+
+    public void charge(long bytes) {
+
+        long rate = _rate;
+
+        if (rate > 0 && bytes > 0) {
+
+            reserve(bytes, rate);
+        }
+    }
+
+    public boolean tryConsume(long bytes) {
+
+        long rate = _rate;
+
+        if (rate <= 0) {
+            return false;
+        }
+
+        long cost = (long) (bytes * 1e9d / rate), now = System.nanoTime(), prev;
+
+        do {
+
+            prev = _next_free.get();
+
+            if (prev > now) {
+                return false;
+            }
+
+        } while (!_next_free.compareAndSet(prev, Math.max(prev, now - BURST_NANOS) + cost));
+
+        return true;
+    }
+
+    private long reserve(long bytes, long rate) {
+
+        long cost = (long) (bytes * 1e9d / rate), now = System.nanoTime(), prev, start;
+
+        do {
+
+            prev = _next_free.get();
+
+            start = Math.max(prev, now - BURST_NANOS);
+
+        } while (!_next_free.compareAndSet(prev, start + cost));
+
+        return start + cost;
+    }
+}
@@ -0,0 +1,63 @@
+package megabasterd;
+
+import java.awt.Color;
+import java.util.logging.Level;
+import static java.util.logging.Logger.getLogger;
+import javax.swing.JLabel;
+import static megabasterd.MiscTools.formatBytes;
+import static megabasterd.MiscTools.swingReflectionInvoke;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class TransferMemoryMeter implements Runnable {
+
+    public static final int SLEEP = 2000;
+    public static final double WARNING_RATIO = 0.9d;
+
+    private final JLabel _memory_label;
+
+    TransferMemoryMeter(JLabel memory_label) {
+        _memory_label = memory_label;
+    }
+
+    @Override
+    public void run() {
+
+        ChunkBufferPool pool = ChunkBufferPool.getInstance();
+
+        long last_reserved = -1;
+
+        int last_waiting = -1;
+
+        while (true) {
+
+            long reserved = pool.getReserved_bytes();
+
+            int waiting = pool.getWaiting();
+
+            if (reserved != last_reserved || waiting != last_waiting) {
+
+                swingReflectionInvoke("setText", _memory_label, "Buffers: " + formatBytes(Math.max(0, reserved)) + " / " + formatBytes(pool.getBudget()) + (waiting > 0 ? " (" + waiting + " waiting)" : ""));
+
+                swingReflectionInvoke("setForeground", _memory_label, (waiting > 0 || reserved >= pool.getBudget() * WARNING_RATIO) ? Color.red : Color.black);
+
+                last_reserved = reserved;
+
+                last_waiting = waiting;
+            }
+
+            try {
+
+                Thread.sleep(SLEEP);
+
+            } catch (InterruptedException ex) {
+
+                getLogger(TransferMemoryMeter.class.getName()).log(Level.SEVERE, null, ex);
+
+                return;
+            }
+        }
+    }
+}
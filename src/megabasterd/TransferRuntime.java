@@ -0,0 +1,286 @@
+package megabasterd;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import static java.util.logging.Logger.getLogger;
+import static megabasterd.DBTools.selectSettingValueFromDB;
+import static megabasterd.MainPanel.THREAD_POOL;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class TransferRuntime {
+
+    public static final int CORE_IO_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int MAX_IO_THREADS = Download.MAX_SIM_TRANSFERENCES * Download.MAX_WORKERS + Upload.MAX_SIM_TRANSFERENCES * 2 * Upload.MAX_WORKERS;
+    public static final int MAX_REJECT_WAIT = 30;
+    public static final int SCHEDULER_THREADS = 2;
+    public static final int THREAD_KEEP_ALIVE = 60;
+    public static final boolean VIRTUAL_THREADS_DEFAULT = false;
+
+    private final ThreadPoolExecutor _io_pool;
+    private final ForkJoinPool _crypto_pool;
+    private final ScheduledExecutorService _scheduler;
+    private final ExecutorService _virtual_pool;
+
+    public static TransferRuntime getInstance() {
+
+        return LazyHolder.INSTANCE;
+    }
+
+    private TransferRuntime() {
+
+        /* No queue: a task waiting behind others could be the one they are blocked on (an upload worker and the HTTP request reading its pipe).
+           One thread per download slot and two per upload slot (the worker and its HTTP request), so a full house fits. */
+        _io_pool = new ThreadPoolExecutor(CORE_IO_THREADS, MAX_IO_THREADS, THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new WaitForThreadPolicy());
+
+        _io_pool.allowCoreThreadTimeOut(true);
+
+        _crypto_pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        _scheduler = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS);
+
+        String virtual_threads = selectSettingValueFromDB("use_virtual_threads");
+
+        _virtual_pool = (virtual_threads != null ? virtual_threads.equals("yes") : VIRTUAL_THREADS_DEFAULT) ? newVirtualThreadExecutor() : null;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+
+        try {
+
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+
+            System.out.println("TransferRuntime: chunk workers will run on virtual threads");
+
+            return executor;
+
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+
+            getLogger(TransferRuntime.class.getName()).log(Level.WARNING, "Virtual threads are not available in this JVM, using platform threads", ex);
+
+            return null;
+        }
+    }
+
+    public boolean isVirtual_threads() {
+        return _virtual_pool != null;
+    }
+
+    public Executor getWorker_executor() {
+        return _virtual_pool != null ? _virtual_pool : _io_pool;
+    }
+
+    public ForkJoinPool getCrypto_pool() {
+        return _crypto_pool;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return _scheduler;
+    }
+
+    public int getIo_threads() {
+        return _io_pool.getPoolSize();
+    }
+
+    public TaskGroup newTaskGroup() {
+
+        //Chunk writers, MAC generators and tuners live as long as the transfer: they must not take threads from the capped slot pool
+        return new TaskGroup(THREAD_POOL, getWorker_executor());
+    }
+
+    private static final class WaitForThreadPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+
+            //Backpressure: the caller waits for a thread to become free instead of failing right away
+            try {
+
+                if (executor.isShutdown() || !executor.getQueue().offer(task, MAX_REJECT_WAIT, TimeUnit.SECONDS)) {
+
+                    throw new RejectedExecutionException("No free I/O threads after " + MAX_REJECT_WAIT + " seconds");
+                }
+
+            } catch (InterruptedException ex) {
+
+                Thread.currentThread().interrupt();
+
+                throw new RejectedExecutionException(ex);
+            }
+        }
+    }
+
+    public static final class TaskGroup {
+
+        private final Executor _executor;
+        private final Executor _worker_executor;
+        private final Set<Future<?>> _tasks;
+        private final Object _lock;
+        private volatile boolean _shutdown;
+
+        private TaskGroup(Executor executor, Executor worker_executor) {
+            _executor = executor;
+            _worker_executor = worker_executor;
+            _tasks = Collections.newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
+            _lock = new Object();
+            _shutdown = false;
+        }
+
+        public void execute(Runnable task) {
+
+            execute(task, _executor);
+        }
+
+        public void executeWorker(Runnable task) {
+
+            execute(task, _worker_executor);
+        }
+
+        private void execute(Runnable task, Executor executor) {
+
+            FutureTask<Void> future = new FutureTask<Void>(task, null) {
+                @Override
+                protected void done() {
+
+                    if (!isCancelled()) {
+
+                        try {
+
+                            get();
+
+                        } catch (InterruptedException | ExecutionException ex) {
+
+                            getLogger(TransferRuntime.class.getName()).log(Level.SEVERE, null, ex);
+                        }
+                    }
+
+                    remove(this);
+                }
+            };
+
+            add(future);
+
+            try {
+
+                executor.execute(future);
+
+            } catch (RejectedExecutionException ex) {
+
+                remove(future);
+
+                throw ex;
+            }
+        }
+
+        public CompletableFuture<Void> newAsyncTask() {
+
+            /* Work that is driven by callbacks instead of a thread: the group waits for (and cancels) it like any other task. */
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+
+            add(future);
+
+            future.whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override
+                public void accept(Void result, Throwable ex) {
+
+                    remove(future);
+                }
+            });
+
+            return future;
+        }
+
+        private void add(Future<?> future) {
+
+            synchronized (_lock) {
+
+                if (_shutdown) {
+
+                    throw new RejectedExecutionException();
+                }
+
+                _tasks.add(future);
+            }
+        }
+
+        private void remove(Future<?> future) {
+
+            synchronized (_lock) {
+
+                _tasks.remove(future);
+
+                _lock.notifyAll();
+            }
+        }
+
+        public void shutdown() {
+            _shutdown = true;
+        }
+
+        public void shutdownNow() {
+
+            _shutdown = true;
+
+            for (Future<?> task : _tasks) {
+
+                task.cancel(true);
+            }
+        }
+
+        public boolean isShutdown() {
+            return _shutdown;
+        }
+
+        public boolean isTerminated() {
+            return _shutdown && _tasks.isEmpty();
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+
+            long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+
+            synchronized (_lock) {
+
+                long wait;
+
+                while (!_tasks.isEmpty()) {
+
+                    if ((wait = deadline - System.currentTimeMillis()) <= 0) {
+
+                        return false;
+                    }
+
+                    _lock.wait(wait);
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static class LazyHolder {
+
+        private static final TransferRuntime INSTANCE = new TransferRuntime();
+    }
+}
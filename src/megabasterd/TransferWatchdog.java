@@ -0,0 +1,188 @@
+package megabasterd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import static java.util.logging.Logger.getLogger;
+import static megabasterd.DBTools.selectIntSettingValueFromDB;
+import static megabasterd.MainPanel.THREAD_POOL;
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ *
+ * @author tonikelope
+ */
+public final class TransferWatchdog implements Runnable {
+
+    public static final int WATCHDOG_SLEEP = 1;
+    public static final int STALL_WINDOW = 20;
+    public static final int MIN_SPEED_DEFAULT = 1;
+    public static final int FIRST_BYTE_TIMEOUT_DEFAULT = 30;
+
+    private final Set<Watch> _watches;
+    private final long _min_speed;
+    private final long _first_byte_timeout;
+
+    public static TransferWatchdog getInstance() {
+
+        return LazyHolder.INSTANCE;
+    }
+
+    private TransferWatchdog() {
+
+        _watches = Collections.newSetFromMap(new ConcurrentHashMap<Watch, Boolean>());
+
+        _min_speed = selectIntSettingValueFromDB("watchdog_min_speed", MIN_SPEED_DEFAULT) * 1024L;
+
+        _first_byte_timeout = selectIntSettingValueFromDB("watchdog_first_byte_timeout", FIRST_BYTE_TIMEOUT_DEFAULT) * 1000L;
+
+        THREAD_POOL.execute(this);
+    }
+
+    public Watch watch(Transference transference, HttpRequestBase request) {
+
+        Watch watch = new Watch(transference, request);
+
+        _watches.add(watch);
+
+        return watch;
+    }
+
+    @Override
+    public void run() {
+
+        while (true) {
+
+            try {
+
+                Thread.sleep(WATCHDOG_SLEEP * 1000);
+
+            } catch (InterruptedException ex) {
+
+                getLogger(TransferWatchdog.class.getName()).log(Level.SEVERE, null, ex);
+
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+
+            for (Watch watch : _watches) {
+
+                watch.check(now);
+            }
+        }
+    }
+
+    public final class Watch implements Closeable {
+
+        private final Transference _transference;
+        private final HttpRequestBase _request;
+        private final long[] _window;
+        private volatile long _bytes;
+        private volatile boolean _stalled;
+        private volatile Closeable _closeable;
+        private long _started;
+        private int _window_pos;
+        private int _samples;
+
+        private Watch(Transference transference, HttpRequestBase request) {
+            _transference = transference;
+            _request = request;
+            _window = new long[STALL_WINDOW];
+            _bytes = 0L;
+            _stalled = false;
+            _closeable = null;
+            _started = System.currentTimeMillis();
+            _window_pos = 0;
+            _samples = 0;
+        }
+
+        public void setCloseable(Closeable closeable) {
+            _closeable = closeable;
+        }
+
+        public boolean isStalled() {
+            return _stalled;
+        }
+
+        public void addBytes(int bytes) {
+            _bytes += bytes;
+        }
+
+        private boolean isThrottled() {
+
+            return _transference.getBandwidth_node().isLimited();
+        }
+
+        private void check(long now) {
+
+            long bytes = _bytes;
+
+            if (_transference.isPaused() || _transference.isStopped()) {
+
+                _started = now;
+
+                _samples = 0;
+
+            } else if (bytes == 0) {
+
+                if (_first_byte_timeout > 0 && now - _started > _first_byte_timeout) {
+
+                    stall("no data after " + (now - _started) / 1000 + " secs");
+                }
+
+            } else {
+
+                long oldest = _window[_window_pos];
+
+                _window[_window_pos] = bytes;
+
+                _window_pos = (_window_pos + 1) % STALL_WINDOW;
+
+                if (++_samples > STALL_WINDOW && _min_speed > 0 && !isThrottled() && (bytes - oldest) / STALL_WINDOW < _min_speed) {
+
+                    stall(MiscTools.formatBytes((bytes - oldest) / STALL_WINDOW) + "/s in the last " + STALL_WINDOW + " secs");
+                }
+            }
+        }
+
+        private void stall(String reason) {
+
+            System.out.println("TransferWatchdog: connection stalled (" + reason + "). Aborting " + _request.getURI());
+
+            _stalled = true;
+
+            _watches.remove(this);
+
+            _request.abort();
+
+            Closeable closeable = _closeable;
+
+            if (closeable != null) {
+
+                try {
+
+                    closeable.close();
+
+                } catch (IOException ex) {
+
+                    getLogger(TransferWatchdog.class.getName()).log(Level.WARNING, null, ex);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+
+            _watches.remove(this);
+        }
+    }
+
+    private final static class LazyHolder {
+
+        private static final TransferWatchdog INSTANCE = new TransferWatchdog();
+    }
+}
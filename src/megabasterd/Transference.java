@@ -1,6 +1,6 @@
 package megabasterd;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  *
@@ -32,7 +32,7 @@ public interface Transference {
 
     void checkSlotsAndWorkers();
 
-    ConcurrentLinkedQueue<Integer> getPartialProgress();
+    LongAdder getPartialProgress();
 
     long getProgress();
 
@@ -42,9 +42,9 @@ public interface Transference {
 
     long getFile_size();
 
-    SpeedMeter getSpeed_meter();
+    BandwidthNode getBandwidth_node();
 
-    ProgressMeter getProgress_meter();
+    SpeedMeter getSpeed_meter();
 
     MainPanel getMain_panel();
 
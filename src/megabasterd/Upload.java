@@ -10,9 +10,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import static java.util.logging.Logger.getLogger;
 import static megabasterd.MainPanel.THREAD_POOL;
@@ -38,7 +38,6 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
     private final MainPanel _main_panel;
     private volatile UploadView _view = null; //lazy init
     private volatile SpeedMeter _speed_meter = null; //lazy init
-    private volatile ProgressMeter _progress_meter = null; //lazy init
     private String _exit_message;
     private String _dir_name;
     private volatile boolean _exit;
@@ -52,8 +51,8 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
     private byte[] _byte_file_iv;
     private final ConcurrentLinkedQueue<Long> _rejectedChunkIds;
     private long _last_chunk_id_dispatched;
-    private final ConcurrentLinkedQueue<Integer> _partialProgressQueue;
-    private final ExecutorService _thread_pool;
+    private final LongAdder _partial_progress;
+    private final TransferRuntime.TaskGroup _thread_pool;
     private int[] _file_meta_mac;
     private boolean _finishing_upload;
     private String _fid;
@@ -80,6 +79,7 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
     private final String _folder_link;
     private final boolean _use_slots;
     private final boolean _restart;
+    private final BandwidthNode _bandwidth_node;
 
     public Upload(MainPanel main_panel, MegaAPI ma, String filename, String parent_node, int[] ul_key, String ul_url, String root_node, byte[] share_key, String folder_link, boolean use_slots, int slots, boolean restart) {
 
@@ -104,9 +104,10 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
         _workers_lock = new Object();
         _chunkid_lock = new Object();
         _chunkworkers = new ArrayList<>();
-        _partialProgressQueue = new ConcurrentLinkedQueue<>();
+        _partial_progress = new LongAdder();
         _rejectedChunkIds = new ConcurrentLinkedQueue<>();
-        _thread_pool = Executors.newCachedThreadPool();
+        _bandwidth_node = main_panel.getStream_supervisor().newOutputNode(0, 0, BandwidthNode.DEFAULT_WEIGHT);
+        _thread_pool = TransferRuntime.getInstance().newTaskGroup();
 
     }
 
@@ -155,11 +156,7 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
         return _last_chunk_id_dispatched;
     }
 
-    public ConcurrentLinkedQueue<Integer> getPartialProgressQueue() {
-        return _partialProgressQueue;
-    }
-
-    public ExecutorService getThread_pool() {
+    public TransferRuntime.TaskGroup getThread_pool() {
         return _thread_pool;
     }
 
@@ -274,41 +271,24 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
     }
 
     @Override
-    public SpeedMeter getSpeed_meter() {
-
-        SpeedMeter result = _speed_meter;
-
-        if (result == null) {
-
-            synchronized (this) {
-
-                result = _speed_meter;
-
-                if (result == null) {
-
-                    _speed_meter = result = new SpeedMeter(this, getMain_panel().getGlobal_up_speed());
-
-                }
-            }
-        }
-
-        return result;
+    public BandwidthNode getBandwidth_node() {
+        return _bandwidth_node;
     }
 
     @Override
-    public ProgressMeter getProgress_meter() {
+    public SpeedMeter getSpeed_meter() {
 
-        ProgressMeter result = _progress_meter;
+        SpeedMeter result = _speed_meter;
 
         if (result == null) {
 
             synchronized (this) {
 
-                result = _progress_meter;
+                result = _speed_meter;
 
                 if (result == null) {
 
-                    _progress_meter = result = new ProgressMeter(this);
+                    _speed_meter = result = new SpeedMeter(this);
 
                 }
             }
@@ -491,8 +471,6 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
 
             setPause(false);
 
-            _main_panel.getGlobal_up_speed().secureNotify();
-
             synchronized (_workers_lock) {
 
                 for (ChunkUploader uploader : getChunkworkers()) {
@@ -512,8 +490,6 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
             getView().pause();
         }
 
-        _main_panel.getGlobal_up_speed().secureNotify();
-
         _main_panel.getUpload_manager().secureNotify();
     }
 
@@ -576,8 +552,8 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
     }
 
     @Override
-    public ConcurrentLinkedQueue<Integer> getPartialProgress() {
-        return getPartialProgressQueue();
+    public LongAdder getPartialProgress() {
+        return _partial_progress;
     }
 
     @Override
@@ -601,10 +577,13 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
 
                     System.out.println("Lanzando chunkuploader desde startslot()...");
 
-                    _thread_pool.execute(c);
+                    _thread_pool.executeWorker(c);
+
+                } catch (RejectedExecutionException ex) {
 
-                } catch (java.util.concurrent.RejectedExecutionException e) {
-                    System.out.println(e.getMessage());
+                    _chunkworkers.remove(c);
+
+                    getLogger(Upload.class.getName()).log(Level.WARNING, null, ex);
                 }
 
             }
@@ -703,11 +682,9 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
                     swingReflectionInvoke("setValue", getView().getProgress_pbar(), Integer.MAX_VALUE);
                 }
 
-                _thread_pool.execute(getProgress_meter());
-
-                _thread_pool.execute(getSpeed_meter());
+                ProgressMeter.getInstance().attach(this);
 
-                getMain_panel().getGlobal_up_speed().secureNotify();
+                getMain_panel().getGlobal_speed_meter().attachSpeedMeter(getSpeed_meter(), true);
 
                 _mac_generator = new UploadMACGenerator(this);
 
@@ -725,7 +702,23 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
 
                             System.out.println("Lanzando chunkuploader" + t + " ...");
 
-                            _thread_pool.execute(c);
+                            try {
+
+                                _thread_pool.executeWorker(c);
+
+                            } catch (RejectedExecutionException ex) {
+
+                                _chunkworkers.remove(c);
+
+                                getLogger(Upload.class.getName()).log(Level.WARNING, "No free threads left, starting with {0} slots", _chunkworkers.size());
+
+                                break;
+                            }
+                        }
+
+                        if (_chunkworkers.isEmpty()) {
+
+                            emergencyStopUploader("No free threads to start the upload!");
                         }
 
                         swingReflectionInvoke("setVisible", getView().getSlots_label(), true);
@@ -740,7 +733,16 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
 
                         _chunkworkers.add(c);
 
-                        _thread_pool.execute(c);
+                        try {
+
+                            _thread_pool.executeWorker(c);
+
+                        } catch (RejectedExecutionException ex) {
+
+                            _chunkworkers.remove(c);
+
+                            emergencyStopUploader("No free threads to start the upload!");
+                        }
 
                         swingReflectionInvoke("setVisible", getView().getSlots_label(), false);
 
@@ -767,13 +769,7 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
 
                 System.out.println("Chunkuploaders finished!");
 
-                getSpeed_meter().setExit(true);
-
-                getMain_panel().getGlobal_up_speed().secureNotify();
-
-                getProgress_meter().setExit(true);
-
-                getProgress_meter().secureNotify();
+                getMain_panel().getGlobal_speed_meter().detachSpeedMeter(getSpeed_meter());
 
                 try {
 
@@ -794,6 +790,8 @@ public final class Upload implements Transference, Runnable, SecureSingleThreadN
 
                 System.out.println("Uploader thread pool finished!");
 
+                ProgressMeter.getInstance().detach(this);
+
                 swingReflectionInvoke("setVisible", new Object[]{getView().getSpeed_label(), getView().getRemtime_label(), getView().getPause_button(), getView().getStop_button(), getView().getSlots_label(), getView().getSlots_spinner()}, false);
 
                 getMain_panel().getUpload_manager().secureNotify();
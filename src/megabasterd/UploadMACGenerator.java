@@ -3,16 +3,12 @@ package megabasterd;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import static java.util.logging.Logger.getLogger;
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import static megabasterd.MiscTools.Bin2BASE64;
 import static megabasterd.MiscTools.HashString;
 import static megabasterd.MiscTools.bin2i32a;
@@ -104,46 +100,23 @@ public final class UploadMACGenerator implements Runnable, SecureSingleThreadNot
             FileOutputStream temp_file_out;
 
             Chunk chunk;
-            int[] file_iv = bin2i32a(_upload.getByte_file_iv()), int_block, file_mac = _upload.getSaved_file_mac(), mac_iv = CryptTools.AES_ZERO_IV_I32A;
-            int reads;
-            byte[] byte_block = new byte[16];
             String temp_file_data = "";
             boolean new_chunk = false;
 
+            ChunkMACEngine mac_engine = new ChunkMACEngine(_upload.getByte_file_key(), bin2i32a(_upload.getByte_file_iv()));
+
+            mac_engine.setFile_mac(_upload.getSaved_file_mac());
+
             while (!_exit && (!_upload.isStopped() || !_upload.getChunkworkers().isEmpty()) && (_bytes_read < _upload.getFile_size() || (_upload.getFile_size() == 0 && _last_chunk_id_read < 1))) {
                 while (_chunk_queue.containsKey(_last_chunk_id_read + 1)) {
                     chunk = _chunk_queue.get(_last_chunk_id_read + 1);
 
                     try {
-                        int[] chunk_mac = {file_iv[0], file_iv[1], file_iv[0], file_iv[1]};
-
-                        InputStream chunk_is = chunk.getInputStream();
-
-                        while ((reads = chunk_is.read(byte_block)) != -1) {
-                            if (reads < byte_block.length) {
-                                for (int i = reads; i < byte_block.length; i++) {
-                                    byte_block[i] = 0;
-                                }
-                            }
-
-                            int_block = bin2i32a(byte_block);
-
-                            for (int i = 0; i < chunk_mac.length; i++) {
-                                chunk_mac[i] ^= int_block[i];
-                            }
-
-                            chunk_mac = CryptTools.aes_cbc_encrypt_ia32(chunk_mac, bin2i32a(_upload.getByte_file_key()), mac_iv);
-                        }
-
-                        for (int i = 0; i < file_mac.length; i++) {
-                            file_mac[i] ^= chunk_mac[i];
-                        }
-
-                        file_mac = CryptTools.aes_cbc_encrypt_ia32(file_mac, bin2i32a(_upload.getByte_file_key()), mac_iv);
+                        mac_engine.fold(chunk.getMac());
 
                         _bytes_read += chunk.getSize();
 
-                    } catch (IOException | NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException ex) {
+                    } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException ex) {
                         getLogger(UploadMACGenerator.class.getName()).log(Level.SEVERE, null, ex);
                     }
 
@@ -157,7 +130,7 @@ public final class UploadMACGenerator implements Runnable, SecureSingleThreadNot
 
                 if (new_chunk) {
 
-                    temp_file_data = (String.valueOf(_last_chunk_id_read) + "|" + String.valueOf(_bytes_read) + "|" + Bin2BASE64(i32a2bin(file_mac)));
+                    temp_file_data = (String.valueOf(_last_chunk_id_read) + "|" + String.valueOf(_bytes_read) + "|" + Bin2BASE64(i32a2bin(mac_engine.getFile_mac())));
 
                     System.out.println("Macgenerator -> " + temp_file_data);
 
@@ -178,9 +151,7 @@ public final class UploadMACGenerator implements Runnable, SecureSingleThreadNot
 
             if (_bytes_read == _upload.getFile_size()) {
 
-                int[] meta_mac = {file_mac[0] ^ file_mac[1], file_mac[2] ^ file_mac[3]};
-
-                _upload.setFile_meta_mac(meta_mac);
+                _upload.setFile_meta_mac(mac_engine.getMeta_mac());
             }
 
             temp_file.delete();
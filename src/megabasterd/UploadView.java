@@ -493,7 +493,7 @@ public final class UploadView extends javax.swing.JPanel implements Transference
                 }
             }
 
-            int conta_error = 0;
+            int conta_error = 0, conta_stalled = 0;
 
             for (ChunkUploader c : _upload.getChunkworkers()) {
 
@@ -501,9 +501,14 @@ public final class UploadView extends javax.swing.JPanel implements Transference
 
                     conta_error++;
                 }
+
+                if (c.isStalled()) {
+
+                    conta_stalled++;
+                }
             }
 
-            if (conta_error > 0) {
+            if (conta_error > 0 || conta_stalled > 0) {
 
                 swingReflectionInvoke("setForeground", slot_status_label, Color.red);
 
@@ -512,7 +517,7 @@ public final class UploadView extends javax.swing.JPanel implements Transference
                 swingReflectionInvoke("setForeground", slot_status_label, Color.black);
             }
 
-            swingReflectionInvoke("setText", slot_status_label, (conta_exit > 0 ? "Removing: " + conta_exit : "") + (conta_error > 0 ? ((conta_exit > 0 ? " / " : "") + "Error: " + conta_error) : ""));
+            swingReflectionInvoke("setText", slot_status_label, (conta_exit > 0 ? "Removing: " + conta_exit : "") + (conta_error > 0 ? ((conta_exit > 0 ? " / " : "") + "Error: " + conta_error) : "") + (conta_stalled > 0 ? ((conta_exit > 0 || conta_error > 0 ? " / " : "") + "Stalled: " + conta_stalled) : ""));
 
         }
     }